@@ -0,0 +1,77 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Tab completion of managed world names and world directories.
+ * The template completer of /world create searches the same directory index as /world import,
+ * but its filter asks the server for loaded worlds, so it isn't benchmarked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompletionBenchmark {
+
+    @Param({"1000", "50000"})
+    public int worldCount;
+
+    /**
+     * "" matches every world, "world_12" matches a few and "nether" matches nothing
+     */
+    @Param({"", "world_12", "nether"})
+    public String prefix;
+
+    private Path dataFolder;
+    private FileWriteQueue writeQueue;
+    private WorldConfigList worldConfigList;
+    private WorldDirectoryScanner worldDirectoryScanner;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.initLogger();
+        dataFolder = Fixtures.createDataFolder();
+        final Metrics metrics = new Metrics();
+        writeQueue = new FileWriteQueue(0, metrics);
+        final Config config = new Config(dataFolder.resolve("config.yml"), writeQueue);
+        worldConfigList = new WorldConfigList(dataFolder.resolve("worlds.yml"), writeQueue, metrics);
+        worldConfigList.replace(Fixtures.createWorldConfigs(worldCount, config.getDefaultWorldConfig()));
+        // Index as many unmanaged directories as managed worlds without scanning the disk
+        worldDirectoryScanner = new WorldDirectoryScanner(dataFolder);
+        for (int i = 0; i < worldCount; i++) {
+            worldDirectoryScanner.onWorldLoad(new WorldLoadEvent(Fakes.world("world_" + i)));
+            worldDirectoryScanner.onWorldLoad(new WorldLoadEvent(Fakes.world("world_" + i + "_backup")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writeQueue.shutdown();
+        Fixtures.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public List<String> managedWorlds() {
+        return worldConfigList.getWorldNamesStartingWith(prefix);
+    }
+
+    /**
+     * Same as the completer of /world import, which suggests directories of unmanaged worlds.
+     */
+    @Benchmark
+    public List<String> importWorlds() {
+        return worldDirectoryScanner.search(prefix, w -> !worldConfigList.get(w).isPresent());
+    }
+}
@@ -0,0 +1,160 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Handlers called when players join or change worlds.
+ * Methods prefixed with {@code legacy} reproduce the previous handler, which listened to every
+ * {@code PlayerTeleportEvent} and looked up the destination by name in a {@code ConcurrentHashMap}
+ * wrapped in {@code Optional}, so the gain is shown side by side.
+ * Run with {@code -prof gc} (enabled in build.gradle) and compare {@code gc.alloc.rate.norm}
+ * to see allocation per event.
+ * Fake objects are {@code Proxy} instances, so their calls cost more than real ones, and calls with
+ * arguments (e.g. {@code setGameMode}) allocate an argument array;
+ * compare results between methods rather than reading them as absolute numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventHandlerBenchmark {
+
+    private Path dataFolder;
+    private FileWriteQueue writeQueue;
+    private GameModeEnforcer gameModeEnforcer;
+    private World survivalWorld;
+    private World creativeWorld;
+    private Player player;
+    private PlayerChangedWorldEvent changedWorldEvent;
+    private PlayerJoinEvent joinEvent;
+    private LegacyHandler legacyHandler;
+    private PlayerTeleportEvent worldChangeTeleportEvent;
+    private PlayerTeleportEvent sameWorldTeleportEvent;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.initLogger();
+        dataFolder = Fixtures.createDataFolder();
+        final Metrics metrics = new Metrics();
+        writeQueue = new FileWriteQueue(0, metrics);
+        final Config config = new Config(dataFolder.resolve("config.yml"), writeQueue);
+        final WorldConfigList worldConfigList =
+            new WorldConfigList(dataFolder.resolve("worlds.yml"), writeQueue, metrics);
+        final WorldConfig worldConfig = WorldConfig.fromDefault(config.getDefaultWorldConfig());
+        final Map<String, WorldConfig> map = new HashMap<>();
+        map.put("survival", worldConfig.withGameMode(GameMode.SURVIVAL));
+        map.put("creative", worldConfig.withGameMode(GameMode.CREATIVE));
+        worldConfigList.replace(map);
+        final WorldConfigTable worldConfigTable = new WorldConfigTable(worldConfigList);
+        survivalWorld = Fakes.world("survival");
+        creativeWorld = Fakes.world("creative");
+        worldConfigTable.onWorldLoad(new WorldLoadEvent(survivalWorld));
+        worldConfigTable.onWorldLoad(new WorldLoadEvent(creativeWorld));
+        gameModeEnforcer = new GameModeEnforcer(config, worldConfigTable, metrics);
+        player = Fakes.player("player", survivalWorld, GameMode.SURVIVAL);
+        changedWorldEvent = new PlayerChangedWorldEvent(player, creativeWorld);
+        joinEvent = new PlayerJoinEvent(player, null);
+        legacyHandler = new LegacyHandler(worldConfigList.getMap(), gameModeEnforcer);
+        worldChangeTeleportEvent = new PlayerTeleportEvent(player,
+            new Location(creativeWorld, 0, 64, 0), new Location(survivalWorld, 0, 64, 0));
+        sameWorldTeleportEvent = new PlayerTeleportEvent(player,
+            new Location(survivalWorld, 0, 64, 0), new Location(survivalWorld, 100, 64, 100));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writeQueue.shutdown();
+        Fixtures.deleteRecursively(dataFolder);
+    }
+
+    /**
+     * The player already has the game mode of the destination.
+     */
+    @Benchmark
+    public void worldChangeWithoutUpdate() {
+        gameModeEnforcer.onWorldChange(changedWorldEvent);
+    }
+
+    /**
+     * The player moves between worlds with different game modes, so every call updates game mode.
+     */
+    @Benchmark
+    public void worldChangeWithUpdate() {
+        Fakes.moveTo(player, player.getWorld() == survivalWorld ? creativeWorld : survivalWorld);
+        gameModeEnforcer.onWorldChange(changedWorldEvent);
+    }
+
+    @Benchmark
+    public void join() {
+        gameModeEnforcer.onJoin(joinEvent);
+    }
+
+    /**
+     * Baseline of {@link #worldChangeWithoutUpdate()}.
+     */
+    @Benchmark
+    public void legacyWorldChangeWithoutUpdate() {
+        legacyHandler.onTeleport(worldChangeTeleportEvent);
+    }
+
+    /**
+     * Teleport within a world, which other plugins fire constantly.
+     * The current handler listens to {@code PlayerChangedWorldEvent} only, so it isn't called at all for these.
+     */
+    @Benchmark
+    public void legacySameWorldTeleport() {
+        legacyHandler.onTeleport(sameWorldTeleportEvent);
+    }
+
+    /**
+     * The handler before world configs were indexed by {@code World}.
+     * Only the lookup is reproduced; updating game mode goes through the same {@code GameModeEnforcer}.
+     */
+    private static final class LegacyHandler {
+        private final ConcurrentMap<String, WorldConfig> map;
+        private final GameModeEnforcer gameModeEnforcer;
+
+        private LegacyHandler(final Map<String, WorldConfig> map, final GameModeEnforcer gameModeEnforcer) {
+            this.map = new ConcurrentHashMap<>(map);
+            this.gameModeEnforcer = gameModeEnforcer;
+        }
+
+        private void onTeleport(final PlayerTeleportEvent event) {
+            final World from = event.getFrom().getWorld();
+            final World to = event.getTo().getWorld();
+            if (from.equals(to)) {
+                return;
+            }
+            get(to).ifPresent(worldConfig -> {
+                final Player player = event.getPlayer();
+                gameModeEnforcer.enforce(player, worldConfig.getGameMode());
+            });
+        }
+
+        private Optional<WorldConfig> get(final World world) {
+            return Optional.ofNullable(map.get(world.getName()));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package xyz.shirokuro.worlds;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Stand-ins for {@code World} and {@code Player}, which can't be created without a running server.
+ * Methods used by the benchmarked code keep state like the real ones.
+ * Other methods do nothing and return {@code false}, zero, an empty collection or {@code null},
+ * so changes of the benchmarked code don't make benchmarks fail at runtime.
+ */
+final class Fakes {
+
+    private Fakes() {
+    }
+
+    static World world(final String name) {
+        return (World) Proxy.newProxyInstance(
+            Fakes.class.getClassLoader(),
+            new Class<?>[]{World.class},
+            new FakeWorld(name));
+    }
+
+    static Player player(final String name, final World world, final GameMode gameMode) {
+        final FakePlayer handler = new FakePlayer(name, gameMode);
+        final Player player = (Player) Proxy.newProxyInstance(
+            Fakes.class.getClassLoader(),
+            new Class<?>[]{Player.class},
+            handler);
+        moveTo(player, world);
+        return player;
+    }
+
+    /**
+     * Moves specified fake player to specified fake world.
+     */
+    static void moveTo(final Player player, final World world) {
+        final FakePlayer handler = (FakePlayer) Proxy.getInvocationHandler(player);
+        if (handler.world != null) {
+            ((FakeWorld) Proxy.getInvocationHandler(handler.world)).players.remove(player);
+        }
+        handler.world = world;
+        ((FakeWorld) Proxy.getInvocationHandler(world)).players.add(player);
+    }
+
+    private static Object handleOtherMethod(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0F;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        } else if (type == Set.class) {
+            return Collections.emptySet();
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        } else {
+            return null;
+        }
+    }
+
+    private static final class FakeWorld implements InvocationHandler {
+        private final String name;
+        private final UUID uid = UUID.randomUUID();
+        private final List<Player> players = new ArrayList<>();
+        private final Map<String, String> gameRules = new HashMap<>();
+        private boolean keepSpawnInMemory = true;
+        private long time = 0;
+
+        private FakeWorld(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+                case "getName":
+                case "toString":
+                    return name;
+                case "getUID":
+                    return uid;
+                case "getPlayers":
+                    return new ArrayList<>(players);
+                case "getKeepSpawnInMemory":
+                    return keepSpawnInMemory;
+                case "setKeepSpawnInMemory":
+                    keepSpawnInMemory = (Boolean) args[0];
+                    return null;
+                case "getTime":
+                    return time;
+                case "setTime":
+                    time = (Long) args[0];
+                    return null;
+                case "isGameRule":
+                    return true;
+                case "getGameRuleValue":
+                    return gameRules.get((String) args[0]);
+                case "setGameRuleValue":
+                    gameRules.put((String) args[0], (String) args[1]);
+                    return true;
+                default:
+                    return handleOtherMethod(proxy, method, args);
+            }
+        }
+    }
+
+    private static final class FakePlayer implements InvocationHandler {
+        private final String name;
+        private final UUID uniqueId = UUID.randomUUID();
+        private World world;
+        private GameMode gameMode;
+
+        private FakePlayer(final String name, final GameMode gameMode) {
+            this.name = name;
+            this.gameMode = gameMode;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+                case "getName":
+                case "toString":
+                    return name;
+                case "getUniqueId":
+                    return uniqueId;
+                case "getWorld":
+                    return world;
+                case "getGameMode":
+                    return gameMode;
+                case "setGameMode":
+                    gameMode = (GameMode) args[0];
+                    return null;
+                case "hasPermission":
+                    return false;
+                case "isOnline":
+                    return true;
+                default:
+                    return handleOtherMethod(proxy, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates data folders and configurations used by benchmarks.
+ */
+final class Fixtures {
+
+    private static boolean loggerInitialized = false;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Initializes {@code Logger}, which is initialized by the plugin on a server.
+     * Benchmarks with parameters set up several times in the same JVM, so this can be called repeatedly.
+     */
+    static synchronized void initLogger() {
+        if (!loggerInitialized) {
+            Logger.init(java.util.logging.Logger.getLogger("Worlds"));
+            loggerInitialized = true;
+        }
+    }
+
+    /**
+     * Creates a temporary data folder that contains the default config.yml.
+     */
+    static Path createDataFolder() throws IOException {
+        final Path dataFolder = Files.createTempDirectory("worlds-jmh");
+        try (InputStream in = Fixtures.class.getResourceAsStream("/config.yml")) {
+            Files.copy(in, dataFolder.resolve("config.yml"));
+        }
+        return dataFolder;
+    }
+
+    /**
+     * Creates configurations of worlds named "world_0", "world_1", ...
+     */
+    static Map<String, WorldConfig> createWorldConfigs(final int count, final DefaultWorldConfig def) {
+        final Map<String, WorldConfig> map = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final WorldConfig worldConfig = WorldConfig.fromDefault(def);
+            // Give half of them a spawn so both branches of the format are covered
+            map.put("world_" + i, i % 2 == 0
+                ? worldConfig
+                : worldConfig.withSpawn(new Coord(i, 64, -i, 90, 0)));
+        }
+        return map;
+    }
+
+    static void deleteRecursively(final Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package xyz.shirokuro.worlds;
+
+import java.util.concurrent.TimeUnit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Conversion between {@code WorldConfig} and YAML sections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WorldConfigBenchmark {
+
+    private ConfigurationSection section;
+    private WorldConfig worldConfig;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.initLogger();
+        final YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("game-mode", "CREATIVE");
+        yaml.set("keep-spawn-in-memory", false);
+        yaml.set("load-mode", "lazy");
+        yaml.set("idle-unload-after", 300);
+        new Coord(100.5, 64, -20.5, 90, 0).fillConfigSection(yaml.createSection("spawn"));
+        section = yaml;
+        worldConfig = WorldConfig.load(section);
+    }
+
+    @Benchmark
+    public WorldConfig load() throws ConfigException {
+        return WorldConfig.load(section);
+    }
+
+    @Benchmark
+    public ConfigurationSection fillConfigurationSection() {
+        final YamlConfiguration yaml = new YamlConfiguration();
+        worldConfig.fillConfigurationSection(yaml);
+        return yaml;
+    }
+}
@@ -0,0 +1,95 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loading and saving worlds.yml.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WorldConfigListBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Param({"10", "1000", "50000"})
+        public int worldCount;
+
+        Path dataFolder;
+        Path filePath;
+        FileWriteQueue writeQueue;
+        WorldConfigList worldConfigList;
+        WorldConfigCache.Key key;
+
+        @Setup
+        public void setUp() throws Exception {
+            Fixtures.initLogger();
+            dataFolder = Fixtures.createDataFolder();
+            filePath = dataFolder.resolve("worlds.yml");
+            final Metrics metrics = new Metrics();
+            writeQueue = new FileWriteQueue(0, metrics);
+            final Config config = new Config(dataFolder.resolve("config.yml"), writeQueue);
+            worldConfigList = new WorldConfigList(filePath, writeQueue, metrics);
+            worldConfigList.replace(Fixtures.createWorldConfigs(worldCount, config.getDefaultWorldConfig()));
+            // Writes worlds.yml and its binary cache
+            worldConfigList.save().join();
+            key = WorldConfigCache.Key.of(filePath, Files.readAllBytes(filePath));
+            // Otherwise reloadFromYaml also serializes and writes the cache, which serializeCache measures
+            worldConfigList.disableCacheWrites();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            writeQueue.shutdown();
+            Fixtures.deleteRecursively(dataFolder);
+        }
+    }
+
+    /**
+     * Makes the binary cache stale before each invocation, so worlds.yml is parsed.
+     */
+    @State(Scope.Benchmark)
+    public static class StaleCache {
+        private long lastModified;
+
+        @Setup(Level.Invocation)
+        public void touch(final Registry registry) throws IOException {
+            // The cache key includes modification time of worlds.yml
+            Files.setLastModifiedTime(registry.filePath, FileTime.fromMillis(++lastModified * 1000));
+        }
+    }
+
+    @Benchmark
+    public WorldConfigList.Changes reloadFromCache(final Registry registry) throws Exception {
+        return registry.worldConfigList.reload();
+    }
+
+    @Benchmark
+    public WorldConfigList.Changes reloadFromYaml(final Registry registry, final StaleCache staleCache)
+        throws Exception {
+        return registry.worldConfigList.reload();
+    }
+
+    @Benchmark
+    public byte[] serializeCache(final Registry registry) {
+        return WorldConfigCache.serialize(registry.key, registry.worldConfigList.getMap());
+    }
+
+    @Benchmark
+    public void save(final Registry registry) {
+        registry.worldConfigList.save().join();
+    }
+}
@@ -0,0 +1,659 @@
+package xyz.shirokuro.worlds;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed store of world backups.
+ * <p>
+ * File contents are stored once in {@code objects/} by their SHA-256, and each snapshot is a directory
+ * of hard links to the objects plus a manifest, so unchanged files take no additional space.
+ * Files whose size and modification time match the previous snapshot are not read again.
+ * A snapshot is complete only once its manifest is written.
+ * <p>
+ * Operations run one at a time on a bounded pool of I/O threads, and files within an operation are
+ * processed in parallel.
+ */
+public final class BackupStore {
+
+    private static final DateTimeFormatter SNAPSHOT_ID_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    /**
+     * Also matches IDs without milliseconds, which were written by older versions
+     */
+    private static final Pattern SNAPSHOT_ID_PATTERN = Pattern.compile("[0-9]{8}-[0-9]{6}(-[0-9]{3})?");
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final int IO_THREADS = 2;
+    private static final int IO_QUEUE_CAPACITY = 64;
+
+    private final Path objectsDir;
+    private final Path snapshotsDir;
+    private final Path tempDir;
+    private final ExecutorService executor;
+    private final Metrics.Timer backupTimer;
+    private final LongAdder storedFiles;
+    private final LongAdder reusedFiles;
+    /**
+     * Futures returned by operations that haven't completed yet
+     */
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+    /**
+     * Tail of the operations, which run one at a time
+     */
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    private boolean shutdown;
+
+    public BackupStore(final Path directory, final Metrics metrics) {
+        Objects.requireNonNull(directory, "directory");
+        this.objectsDir = directory.resolve("objects");
+        this.snapshotsDir = directory.resolve("snapshots");
+        this.tempDir = directory.resolve("tmp");
+        this.backupTimer = metrics.timer("backup");
+        this.storedFiles = metrics.counter("backup_files_stored");
+        this.reusedFiles = metrics.counter("backup_files_reused");
+        final AtomicInteger threadNumber = new AtomicInteger();
+        // When the queue is full, the submitting thread copies the file itself,
+        // which limits the number of files in flight.
+        // After shutdown, tasks are rejected instead of being dropped silently.
+        this.executor = new ThreadPoolExecutor(
+            IO_THREADS,
+            IO_THREADS,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY),
+            r -> {
+                final Thread thread = new Thread(r, "Worlds-Backup-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (r, e) -> {
+                if (e.isShutdown()) {
+                    throw new RejectedExecutionException("Backup store is shut down");
+                }
+                r.run();
+            });
+    }
+
+    /**
+     * Takes a snapshot of a world directory.
+     * The directory must not be modified until the returned future completes.
+     *
+     * @param worldName name of the world
+     * @param worldDir directory of the world
+     * @return future that completes with the result
+     */
+    public CompletableFuture<Result> backup(final String worldName, final Path worldDir) {
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(worldDir, "worldDir");
+        return enqueue(() -> {
+            final long start = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> newSnapshotId(worldName), executor)
+                .thenCompose(snapshotId -> {
+                    final Path snapshotDir = snapshotsDir.resolve(worldName).resolve(snapshotId);
+                    return CompletableFuture.supplyAsync(() -> {
+                        final Map<String, Entry> previous = readLatestManifest(worldName);
+                        try {
+                            FileUtils.deleteRecursively(snapshotDir);
+                            Files.createDirectories(snapshotDir);
+                            Files.createDirectories(tempDir);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return new Plan(previous, listFiles(worldDir));
+                    }, executor).thenCompose(plan -> {
+                        final List<CompletableFuture<Entry>> entries = plan.files.stream()
+                            .map(file -> CompletableFuture.supplyAsync(
+                                () -> backupFile(worldDir, snapshotDir, file, plan.previous), executor))
+                            .collect(Collectors.toList());
+                        return CompletableFuture.allOf(entries.toArray(new CompletableFuture<?>[0]))
+                            .thenApplyAsync(v -> {
+                                final List<Entry> result = entries.stream()
+                                    .map(CompletableFuture::join)
+                                    .collect(Collectors.toList());
+                                writeManifest(manifestPath(worldName, snapshotId), result);
+                                backupTimer.recordSince(start);
+                                return new Result(snapshotId, result, plan.previous);
+                            }, executor);
+                    }).whenComplete((result, t) -> {
+                        if (t != null) {
+                            try {
+                                FileUtils.deleteRecursively(snapshotDir);
+                            } catch (IOException e) {
+                                Logger.warn("Failed to delete incomplete backup " + snapshotDir, e);
+                            }
+                        }
+                    });
+                });
+        });
+    }
+
+    /**
+     * Returns whether specified world has a complete snapshot with specified ID.
+     *
+     * @param worldName name of the world
+     * @param snapshotId ID of the snapshot
+     * @return future that completes with the result
+     */
+    public CompletableFuture<Boolean> exists(final String worldName, final String snapshotId) {
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(snapshotId, "snapshotId");
+        return enqueue(() -> CompletableFuture.supplyAsync(
+            () -> SNAPSHOT_ID_PATTERN.matcher(snapshotId).matches() &&
+                Files.exists(manifestPath(worldName, snapshotId)),
+            executor));
+    }
+
+    /**
+     * Returns IDs of the complete snapshots of specified world.
+     *
+     * @param worldName name of the world
+     * @return future that completes with the IDs, oldest first
+     */
+    public CompletableFuture<List<String>> list(final String worldName) {
+        Objects.requireNonNull(worldName, "worldName");
+        return enqueue(() -> CompletableFuture.supplyAsync(() -> listSnapshotIds(worldName), executor));
+    }
+
+    /**
+     * Replaces a world directory with a snapshot.
+     * Files are copied out of the store, so modifying the restored world doesn't modify the snapshot.
+     * The current directory is moved aside and deleted only after the restored one is in place,
+     * so it is kept if the restore fails.
+     * The world must not be loaded.
+     *
+     * @param worldName name of the world
+     * @param snapshotId ID of the snapshot
+     * @param worldDir directory of the world to replace
+     * @return future that completes when the directory is replaced
+     */
+    public CompletableFuture<Void> restore(final String worldName, final String snapshotId, final Path worldDir) {
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(snapshotId, "snapshotId");
+        Objects.requireNonNull(worldDir, "worldDir");
+        final Path restoringDir = worldDir.resolveSibling(worldDir.getFileName() + ".restoring");
+        final Path replacedDir = worldDir.resolveSibling(worldDir.getFileName() + ".replaced");
+        return enqueue(() -> CompletableFuture.supplyAsync(() -> {
+            final Path manifestPath = manifestPath(worldName, snapshotId);
+            if (!SNAPSHOT_ID_PATTERN.matcher(snapshotId).matches() || Files.notExists(manifestPath)) {
+                throw new UncheckedIOException(new NoSuchFileException("Backup: " + snapshotId + " not found"));
+            }
+            try {
+                FileUtils.deleteRecursively(restoringDir);
+                FileUtils.deleteRecursively(replacedDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return readManifest(manifestPath).values();
+        }, executor).thenCompose(entries -> {
+            final List<CompletableFuture<Void>> copies = entries.stream()
+                .map(entry -> CompletableFuture.runAsync(() -> restoreFile(entry, restoringDir), executor))
+                .collect(Collectors.toList());
+            return CompletableFuture.allOf(copies.toArray(new CompletableFuture<?>[0]));
+        }).thenRunAsync(() -> replace(worldDir, restoringDir, replacedDir), executor)
+            .whenComplete((v, t) -> {
+                if (t == null) {
+                    return;
+                }
+                try {
+                    FileUtils.deleteRecursively(restoringDir);
+                } catch (IOException e) {
+                    Logger.warn("Failed to delete incomplete restore " + restoringDir, e);
+                }
+            }));
+    }
+
+    /**
+     * Replaces {@code worldDir} with {@code restoringDir}.
+     * {@code worldDir} is moved to {@code replacedDir} first, and moved back if the replacement fails.
+     */
+    private static void replace(final Path worldDir, final Path restoringDir, final Path replacedDir) {
+        final boolean exists = Files.exists(worldDir);
+        try {
+            if (exists) {
+                Files.move(worldDir, replacedDir, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(restoringDir, worldDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (exists) {
+                try {
+                    Files.move(replacedDir, worldDir, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                    Logger.error("Failed to move " + replacedDir + " back to " + worldDir, rollbackError);
+                }
+            }
+            throw new UncheckedIOException(e);
+        }
+        try {
+            FileUtils.deleteRecursively(replacedDir);
+        } catch (IOException e) {
+            // The restore itself succeeded
+            Logger.warn("Failed to delete replaced world directory " + replacedDir, e);
+        }
+    }
+
+    /**
+     * Deletes snapshots of specified world except the newest {@code keep} ones,
+     * and then deletes objects that are no longer referenced by any snapshot.
+     *
+     * @param worldName name of the world
+     * @param keep number of snapshots to keep
+     * @return future that completes with the number of deleted snapshots
+     */
+    public CompletableFuture<Integer> prune(final String worldName, final int keep) {
+        Objects.requireNonNull(worldName, "worldName");
+        if (keep < 1) {
+            throw new IllegalArgumentException("keep must be positive");
+        }
+        return enqueue(() -> CompletableFuture.supplyAsync(() -> {
+            final List<String> snapshotIds = listSnapshotIds(worldName);
+            final List<String> expired = snapshotIds.subList(0, Math.max(0, snapshotIds.size() - keep));
+            try {
+                for (final String snapshotId : expired) {
+                    // Delete the manifest first, so a half-deleted snapshot is never seen as complete
+                    Files.delete(manifestPath(worldName, snapshotId));
+                    FileUtils.deleteRecursively(snapshotsDir.resolve(worldName).resolve(snapshotId));
+                }
+                if (!expired.isEmpty()) {
+                    deleteUnreferencedObjects();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return expired.size();
+        }, executor));
+    }
+
+    /**
+     * Stops the I/O threads. Operations in progress are interrupted,
+     * and futures of unfinished operations complete with {@link CancellationException}.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.forEach(future -> future.completeExceptionally(
+            new CancellationException("Backup store was shut down")));
+    }
+
+    private synchronized <T> CompletableFuture<T> enqueue(final Supplier<CompletableFuture<T>> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (shutdown) {
+            result.completeExceptionally(new IllegalStateException("Backup store is shut down"));
+            return result;
+        }
+        final CompletableFuture<T> operationResult = tail
+            .handle((v, t) -> null)
+            .thenCompose(v -> operation.get());
+        tail = operationResult;
+        pending.add(result);
+        operationResult.whenComplete((value, t) -> {
+            pending.remove(result);
+            if (t != null) {
+                result.completeExceptionally(t);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns an ID for a new snapshot of specified world.
+     * IDs are timestamps; a millisecond is added while the ID is already taken, so they stay in order.
+     * Must be called by an operation, so no other backup is running.
+     */
+    private String newSnapshotId(final String worldName) {
+        LocalDateTime time = LocalDateTime.now();
+        while (true) {
+            final String snapshotId = time.format(SNAPSHOT_ID_FORMAT);
+            if (Files.notExists(manifestPath(worldName, snapshotId)) &&
+                Files.notExists(snapshotsDir.resolve(worldName).resolve(snapshotId))) {
+                return snapshotId;
+            }
+            time = time.plusNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private Entry backupFile(
+        final Path worldDir,
+        final Path snapshotDir,
+        final Path file,
+        final Map<String, Entry> previous) {
+        final String relativePath = toManifestPath(worldDir.relativize(file));
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            final long size = attrs.size();
+            final long modified = attrs.lastModifiedTime().toMillis();
+            final Entry previousEntry = previous.get(relativePath);
+            final String hash;
+            if (previousEntry != null && previousEntry.size == size && previousEntry.modified == modified &&
+                Files.exists(objectPath(previousEntry.hash))) {
+                hash = previousEntry.hash;
+                reusedFiles.increment();
+            } else {
+                hash = storeObject(file);
+            }
+            final Path link = snapshotDir.resolve(relativePath);
+            Files.createDirectories(link.getParent());
+            try {
+                Files.createLink(link, objectPath(hash));
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // Hard links aren't supported by the file system or across devices
+                Files.copy(objectPath(hash), link);
+            }
+            return new Entry(hash, size, modified, relativePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies specified file into the store while hashing it.
+     *
+     * @return hash of the content
+     */
+    private String storeObject(final Path file) throws IOException {
+        final Path temp = tempDir.resolve(UUID.randomUUID().toString());
+        try {
+            final MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                Files.copy(in, temp);
+            }
+            final String hash = toHex(digest.digest());
+            final Path object = objectPath(hash);
+            if (Files.exists(object)) {
+                // Same content is already stored, possibly by another world
+                reusedFiles.increment();
+                return hash;
+            }
+            Files.createDirectories(object.getParent());
+            try {
+                Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ignored) {
+                // Stored by another world in the meantime
+            }
+            storedFiles.increment();
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void restoreFile(final Entry entry, final Path restoringDir) {
+        final Path dest = restoringDir.resolve(entry.path);
+        try {
+            Files.createDirectories(dest.getParent());
+            Files.copy(objectPath(entry.hash), dest);
+            // Keep the time, so the next backup doesn't need to hash the file again
+            Files.setLastModifiedTime(dest, FileTime.fromMillis(entry.modified));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteUnreferencedObjects() throws IOException {
+        final Set<String> referenced = new HashSet<>();
+        if (Files.exists(snapshotsDir)) {
+            try (DirectoryStream<Path> worlds = Files.newDirectoryStream(snapshotsDir, Files::isDirectory)) {
+                for (final Path worldSnapshotsDir : worlds) {
+                    final String worldName = worldSnapshotsDir.getFileName().toString();
+                    for (final String snapshotId : listSnapshotIds(worldName)) {
+                        readManifest(manifestPath(worldName, snapshotId)).values()
+                            .forEach(entry -> referenced.add(entry.hash));
+                    }
+                }
+            }
+        }
+        if (Files.notExists(objectsDir)) {
+            return;
+        }
+        Files.walkFileTree(objectsDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private List<String> listSnapshotIds(final String worldName) {
+        final Path worldSnapshotsDir = snapshotsDir.resolve(worldName);
+        if (Files.notExists(worldSnapshotsDir)) {
+            return Collections.emptyList();
+        }
+        final List<String> snapshotIds = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(worldSnapshotsDir, "*" + MANIFEST_SUFFIX)) {
+            for (final Path manifest : stream) {
+                final String fileName = manifest.getFileName().toString();
+                snapshotIds.add(fileName.substring(0, fileName.length() - MANIFEST_SUFFIX.length()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // IDs are timestamps, so they sort chronologically
+        Collections.sort(snapshotIds);
+        return snapshotIds;
+    }
+
+    private Map<String, Entry> readLatestManifest(final String worldName) {
+        final List<String> snapshotIds = listSnapshotIds(worldName);
+        if (snapshotIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return readManifest(manifestPath(worldName, snapshotIds.get(snapshotIds.size() - 1)));
+    }
+
+    /**
+     * Reads a manifest.
+     * Each line is {@code <hash>\t<size>\t<modified>\t<path>}.
+     *
+     * @return path to the entry
+     */
+    private static Map<String, Entry> readManifest(final Path manifestPath) {
+        final Map<String, Entry> entries = new HashMap<>();
+        try {
+            for (final String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+                final String[] columns = line.split("\t", 4);
+                if (columns.length != 4) {
+                    throw new IOException("Malformed line in " + manifestPath + ": " + line);
+                }
+                final Entry entry = new Entry(
+                    columns[0], Long.parseLong(columns[1]), Long.parseLong(columns[2]), columns[3]);
+                entries.put(entry.path, entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entries;
+    }
+
+    private void writeManifest(final Path manifestPath, final List<Entry> entries) {
+        final Path temp = tempDir.resolve(UUID.randomUUID().toString());
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (final Entry entry : entries) {
+                    writer.write(entry.hash + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.path);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, manifestPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Path> listFiles(final Path worldDir) {
+        final List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(worldDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    // The lock is held by the server and can't be restored meaningfully
+                    if (attrs.isRegularFile() && !file.getFileName().toString().equals("session.lock")) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    private Path manifestPath(final String worldName, final String snapshotId) {
+        return snapshotsDir.resolve(worldName).resolve(snapshotId + MANIFEST_SUFFIX);
+    }
+
+    private Path objectPath(final String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String toManifestPath(final Path relativePath) {
+        return relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Summary of a backup.
+     */
+    public static final class Result {
+        private final String snapshotId;
+        private final int files;
+        private final int changedFiles;
+        private final long totalBytes;
+
+        private Result(final String snapshotId, final List<Entry> entries, final Map<String, Entry> previous) {
+            this.snapshotId = snapshotId;
+            this.files = entries.size();
+            this.changedFiles = (int) entries.stream()
+                .filter(entry -> {
+                    final Entry previousEntry = previous.get(entry.path);
+                    return previousEntry == null || !previousEntry.hash.equals(entry.hash);
+                })
+                .count();
+            this.totalBytes = entries.stream().mapToLong(entry -> entry.size).sum();
+        }
+
+        public String getSnapshotId() {
+            return snapshotId;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns number of files that are new or differ from the previous snapshot.
+         *
+         * @return number of files
+         */
+        public int getChangedFiles() {
+            return changedFiles;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+
+    private static final class Plan {
+        private final Map<String, Entry> previous;
+        private final List<Path> files;
+
+        private Plan(final Map<String, Entry> previous, final List<Path> files) {
+            this.previous = previous;
+            this.files = files;
+        }
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final long size;
+        private final long modified;
+        private final String path;
+
+        private Entry(final String hash, final long size, final long modified, final String path) {
+            this.hash = hash;
+            this.size = size;
+            this.modified = modified;
+            this.path = path;
+        }
+    }
+}
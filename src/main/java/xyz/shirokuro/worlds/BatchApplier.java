@@ -0,0 +1,122 @@
+package xyz.shirokuro.worlds;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Applies bulk operations (e.g. updating game mode of every player in a world) across ticks.
+ * Each tick processes queued items until the configured time budget is used up,
+ * so large batches don't stall the server.
+ * Batches are processed in submission order. All methods must be called from the main thread.
+ */
+public final class BatchApplier {
+
+    private final Deque<Batch<?>> batches = new ArrayDeque<>();
+    private final Plugin plugin;
+    private final Config config;
+    private BukkitTask task;
+
+    public BatchApplier(final Plugin plugin, final Config config) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+    }
+
+    /**
+     * Enqueues specified items and starts applying {@code action} to them from the next tick.
+     * Items are copied, so {@code items} may be modified after this call.
+     * Exceptions thrown by {@code action} are logged and don't stop the batch.
+     *
+     * @param items items to process
+     * @param action action to apply to each item
+     * @param <T> type of the items
+     * @return future that completes on the main thread with the number of processed items
+     */
+    public <T> CompletableFuture<Integer> submit(final Collection<? extends T> items, final Consumer<? super T> action) {
+        Objects.requireNonNull(items, "items");
+        Objects.requireNonNull(action, "action");
+        final Batch<T> batch = new Batch<>(new ArrayList<T>(items), action);
+        if (items.isEmpty()) {
+            batch.future.complete(0);
+            return batch.future;
+        }
+        batches.addLast(batch);
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+        return batch.future;
+    }
+
+    /**
+     * Returns number of items waiting to be processed.
+     *
+     * @return number of items
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (final Batch<?> batch : batches) {
+            count += batch.size - batch.processed;
+        }
+        return count;
+    }
+
+    private void tick() {
+        final long deadline = System.nanoTime() +
+            TimeUnit.MILLISECONDS.toNanos(config.getBatchBudgetMillis());
+        // Process at least one item per tick even if the budget is tiny
+        do {
+            final Batch<?> batch = batches.peekFirst();
+            if (batch == null) {
+                break;
+            }
+            if (!batch.processNext()) {
+                batches.pollFirst();
+                batch.future.complete(batch.processed);
+            }
+        } while (System.nanoTime() < deadline);
+        if (batches.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static final class Batch<T> {
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final Iterator<T> iterator;
+        private final Consumer<? super T> action;
+        private final int size;
+        private int processed;
+
+        private Batch(final Collection<T> items, final Consumer<? super T> action) {
+            this.iterator = items.iterator();
+            this.action = action;
+            this.size = items.size();
+        }
+
+        /**
+         * @return {@code false} if all items are processed
+         */
+        private boolean processNext() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            final T item = iterator.next();
+            try {
+                action.accept(item);
+            } catch (RuntimeException e) {
+                Logger.error("An exception occurred while applying a batch", e);
+            }
+            processed++;
+            return true;
+        }
+    }
+}
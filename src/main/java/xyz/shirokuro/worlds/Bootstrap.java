@@ -14,4 +14,12 @@ public final class Bootstrap extends JavaPlugin {
             Bukkit.getPluginManager().disablePlugin(this);
         }
     }
+
+    @Override
+    public void onDisable() {
+        final WorldsPlugin instance = WorldsPlugin.getInstance();
+        if (instance != null) {
+            instance.shutdown();
+        }
+    }
 }
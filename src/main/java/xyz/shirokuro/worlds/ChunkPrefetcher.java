@@ -0,0 +1,218 @@
+package xyz.shirokuro.worlds;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Loads chunks around a destination before teleporting there, so the teleport doesn't
+ * load them synchronously from the disk.
+ * Paper's {@code World#getChunkAtAsync} is used if the server provides it.
+ * Otherwise chunks are loaded on the main thread within the batch budget every tick.
+ * All methods must be called from the main thread.
+ */
+public final class ChunkPrefetcher {
+
+    private static final int RADIUS_CHUNKS = 1;
+    /**
+     * Teleport anyway if chunks are not loaded within this period
+     */
+    private static final long TIMEOUT_TICKS = 20 * 5;
+
+    private final Deque<PendingChunk> pendingChunks = new ArrayDeque<>();
+    private final Plugin plugin;
+    private final Config config;
+    private final AsyncChunkLoader asyncLoader;
+    private final Metrics.Timer prefetchTimer;
+    private final LongAdder timeouts;
+    private BukkitTask task;
+
+    public ChunkPrefetcher(final Plugin plugin, final Config config, final Metrics metrics) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+        this.asyncLoader = findAsyncChunkLoader();
+        this.prefetchTimer = metrics.timer("teleport_prefetch");
+        this.timeouts = metrics.counter("teleport_prefetch_timeouts");
+        Logger.info(asyncLoader == null
+            ? "Async chunk loading is not available. Chunks will be loaded across ticks before teleport"
+            : "Using async chunk loading before teleport");
+    }
+
+    /**
+     * Loads chunks around specified location.
+     * The returned future never completes exceptionally. If loading fails or takes too long,
+     * it completes anyway and the remaining chunks are loaded by the teleport itself.
+     *
+     * @param dest destination of teleport
+     * @return future that completes on the main thread once the chunks are loaded
+     */
+    public CompletableFuture<Void> prefetch(final Location dest) {
+        Objects.requireNonNull(dest, "dest");
+        final World world = Objects.requireNonNull(dest.getWorld(), "dest.getWorld()");
+        final int centerX = dest.getBlockX() >> 4;
+        final int centerZ = dest.getBlockZ() >> 4;
+        final List<CompletableFuture<?>> loads = new ArrayList<>();
+        for (int x = centerX - RADIUS_CHUNKS; x <= centerX + RADIUS_CHUNKS; x++) {
+            for (int z = centerZ - RADIUS_CHUNKS; z <= centerZ + RADIUS_CHUNKS; z++) {
+                if (!world.isChunkLoaded(x, z)) {
+                    loads.add(load(world, x, z));
+                }
+            }
+        }
+        if (loads.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final long start = System.nanoTime();
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final BukkitTask timeout = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            if (result.complete(null)) {
+                timeouts.increment();
+                Logger.warn("Timed out loading chunks around " + world.getName() + " " + centerX + "," + centerZ);
+            }
+        }, TIMEOUT_TICKS);
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).whenComplete((v, t) -> {
+            if (t != null) {
+                Logger.warn("Failed to load chunks around " + world.getName() + " " + centerX + "," + centerZ, t);
+            }
+            runOnMainThread(() -> {
+                if (result.complete(null)) {
+                    timeout.cancel();
+                    prefetchTimer.recordSince(start);
+                }
+            });
+        });
+        return result;
+    }
+
+    private CompletableFuture<?> load(final World world, final int x, final int z) {
+        if (asyncLoader != null) {
+            try {
+                return asyncLoader.load(world, x, z);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                final CompletableFuture<?> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+        final PendingChunk chunk = new PendingChunk(world, x, z);
+        pendingChunks.addLast(chunk);
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+        return chunk.future;
+    }
+
+    private void tick() {
+        final long deadline = System.nanoTime() +
+            TimeUnit.MILLISECONDS.toNanos(config.getBatchBudgetMillis());
+        do {
+            final PendingChunk chunk = pendingChunks.pollFirst();
+            if (chunk == null) {
+                task.cancel();
+                task = null;
+                return;
+            }
+            // Skip worlds unloaded while waiting
+            if (Bukkit.getWorld(chunk.world.getUID()) != null) {
+                chunk.world.loadChunk(chunk.x, chunk.z);
+            }
+            chunk.future.complete(null);
+        } while (System.nanoTime() < deadline);
+    }
+
+    private void runOnMainThread(final Runnable runnable) {
+        if (Bukkit.isPrimaryThread()) {
+            runnable.run();
+        } else {
+            Bukkit.getScheduler().runTask(plugin, runnable);
+        }
+    }
+
+    /**
+     * Finds async chunk API of Paper.
+     * 1.13+ returns {@code CompletableFuture<Chunk>}, and 1.12 takes {@code World.ChunkLoadCallback}.
+     *
+     * @return loader, or {@code null} if the server doesn't have the API
+     */
+    private static AsyncChunkLoader findAsyncChunkLoader() {
+        try {
+            final Method method = World.class.getMethod("getChunkAtAsync", int.class, int.class);
+            if (CompletableFuture.class.isAssignableFrom(method.getReturnType())) {
+                return (world, x, z) -> (CompletableFuture<?>) invoke(method, world, x, z);
+            }
+        } catch (NoSuchMethodException ignored) {
+            // Fall through
+        }
+        try {
+            final Class<?> callbackClass = Class.forName("org.bukkit.World$ChunkLoadCallback");
+            final Method method = World.class.getMethod("getChunkAtAsync", int.class, int.class, callbackClass);
+            return (world, x, z) -> {
+                final CompletableFuture<Object> future = new CompletableFuture<>();
+                final Object callback = Proxy.newProxyInstance(
+                    callbackClass.getClassLoader(),
+                    new Class<?>[] {callbackClass},
+                    (proxy, called, args) -> {
+                        switch (called.getName()) {
+                            case "onLoad":
+                                future.complete(args[0]);
+                                return null;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "ChunkLoadCallback";
+                        }
+                    });
+                invoke(method, world, x, z, callback);
+                return future;
+            };
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {
+            return null;
+        }
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... args)
+        throws ReflectiveOperationException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface AsyncChunkLoader {
+        CompletableFuture<?> load(World world, int x, int z) throws ReflectiveOperationException;
+    }
+
+    private static final class PendingChunk {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final World world;
+        private final int x;
+        private final int z;
+
+        private PendingChunk(final World world, final int x, final int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+    }
+}
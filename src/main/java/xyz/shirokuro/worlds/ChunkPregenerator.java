@@ -0,0 +1,476 @@
+package xyz.shirokuro.worlds;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Generates chunks around a center in spiral order, so the area near the center is ready first.
+ * Generation runs within the batch budget every tick, pauses while TPS is below {@code pregen-min-tps},
+ * and waits while the world is not loaded.
+ * Pre-generation of a world that was managed when it started is dropped once the world is removed from worlds.yml.
+ * Progress is saved to a checkpoint file periodically and pre-generation resumes from it after a restart.
+ * All methods must be called from the main thread.
+ */
+public final class ChunkPregenerator implements Listener {
+
+    private static final long CHECKPOINT_INTERVAL_TICKS = 20 * 10;
+    private static final int PROGRESS_STEPS = 10;
+
+    /**
+     * World name to the task. Tasks are processed in insertion order.
+     */
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final Plugin plugin;
+    private final Config config;
+    private final WorldConfigList worldConfigList;
+    private final Path checkpointPath;
+    private final FileWriteQueue writeQueue;
+    private final TickMonitor tickMonitor;
+    private final Metrics.Timer generateTimer;
+    private BukkitTask task;
+    private long ticksSinceCheckpoint;
+    private boolean paused;
+
+    public ChunkPregenerator(
+        final Plugin plugin,
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final Path checkpointPath,
+        final FileWriteQueue writeQueue,
+        final Metrics metrics) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.checkpointPath = Objects.requireNonNull(checkpointPath, "checkpointPath");
+        this.writeQueue = Objects.requireNonNull(writeQueue, "writeQueue");
+        this.tickMonitor = new TickMonitor(plugin);
+        this.generateTimer = metrics.timer("chunk_generate");
+    }
+
+    /**
+     * Resumes pre-generation saved in the checkpoint file.
+     */
+    public void resume() {
+        if (Files.notExists(checkpointPath)) {
+            return;
+        }
+        final YamlConfiguration checkpoint = YamlConfiguration.loadConfiguration(checkpointPath.toFile());
+        for (final String worldName : checkpoint.getKeys(false)) {
+            final ConfigurationSection section = checkpoint.getConfigurationSection(worldName);
+            final Task task;
+            try {
+                task = Task.load(worldName, section);
+            } catch (ConfigException e) {
+                Logger.warn("Discarded pre-generation checkpoint of " + worldName + ": " + e.getMessage());
+                continue;
+            }
+            tasks.put(worldName, task);
+            Logger.info(String.format(Locale.ROOT,
+                "Resuming pre-generation of %s (%d%%)", worldName, task.getProgressPercent()));
+        }
+        if (!tasks.isEmpty()) {
+            startTask();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final WorldLoadEvent event) {
+        // The timer stops while all worlds being pre-generated are unloaded
+        if (tasks.containsKey(event.getWorld().getName())) {
+            startTask();
+        }
+    }
+
+    /**
+     * Starts pre-generation of chunks around specified spawn.
+     *
+     * @param world world to generate
+     * @param spawn spawn location in blocks
+     * @param radiusChunks radius in chunks
+     * @param requester sender who is notified when pre-generation finishes
+     * @throws IllegalStateException if specified world is already being pre-generated
+     */
+    public void start(
+        final World world,
+        final Coord spawn,
+        final int radiusChunks,
+        final CommandSender requester) {
+        Objects.requireNonNull(world, "world");
+        Objects.requireNonNull(spawn, "spawn");
+        Objects.requireNonNull(requester, "requester");
+        if (radiusChunks < 0) {
+            throw new IllegalArgumentException("radiusChunks cannot be negative");
+        }
+        if (tasks.containsKey(world.getName())) {
+            throw new IllegalStateException(world.getName() + " is already being pre-generated");
+        }
+        final Task task = new Task(
+            world.getName(),
+            (int) Math.floor(spawn.getX()) >> 4,
+            (int) Math.floor(spawn.getZ()) >> 4,
+            radiusChunks,
+            worldConfigList.get(world).isPresent(),
+            requester);
+        tasks.put(world.getName(), task);
+        saveCheckpoint();
+        startTask();
+    }
+
+    /**
+     * Stops pre-generation of specified world.
+     *
+     * @param worldName name of the world
+     * @return {@code true} if the world was being pre-generated
+     */
+    public boolean stop(final String worldName) {
+        if (tasks.remove(worldName) == null) {
+            return false;
+        }
+        saveCheckpoint();
+        return true;
+    }
+
+    /**
+     * Returns whether specified world is being pre-generated, including while it waits for the world to be loaded.
+     *
+     * @param worldName name of the world
+     * @return {@code true} if the world has a pre-generation task
+     */
+    public boolean isRunning(final String worldName) {
+        return tasks.containsKey(worldName);
+    }
+
+    /**
+     * Returns descriptions of the worlds being pre-generated.
+     *
+     * @return descriptions
+     */
+    public List<String> describe() {
+        final List<String> result = new ArrayList<>();
+        for (final Task task : tasks.values()) {
+            final String state;
+            if (Bukkit.getWorld(task.worldName) == null) {
+                state = "waiting for the world to be loaded";
+            } else if (paused) {
+                state = "paused";
+            } else {
+                state = "running";
+            }
+            result.add(String.format(Locale.ROOT, "%s: %d%% of %d chunks (%s)",
+                task.worldName, task.getProgressPercent(), task.total, state));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public double getTps() {
+        return tickMonitor.getTps();
+    }
+
+    /**
+     * Stops generating and writes the checkpoint.
+     */
+    public void shutdown() {
+        stopTask();
+        saveCheckpoint();
+    }
+
+    private void startTask() {
+        if (task != null) {
+            return;
+        }
+        tickMonitor.start();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    private void stopTask() {
+        if (task == null) {
+            return;
+        }
+        task.cancel();
+        task = null;
+        tickMonitor.stop();
+    }
+
+    private void tick() {
+        dropUnmanaged();
+        if (tasks.values().stream().noneMatch(t -> Bukkit.getWorld(t.worldName) != null)) {
+            // Restarted by onWorldLoad
+            stopTask();
+            saveCheckpoint();
+            return;
+        }
+        if (++ticksSinceCheckpoint >= CHECKPOINT_INTERVAL_TICKS) {
+            saveCheckpoint();
+        }
+        final double tps = tickMonitor.getTps();
+        if (tps < config.getPregenMinTps()) {
+            if (!paused) {
+                paused = true;
+                Logger.info(String.format(Locale.ROOT, "Paused pre-generation (TPS: %.1f)", tps));
+            }
+            return;
+        }
+        if (paused) {
+            paused = false;
+            Logger.info(String.format(Locale.ROOT, "Resumed pre-generation (TPS: %.1f)", tps));
+        }
+        final long deadline = System.nanoTime() +
+            TimeUnit.MILLISECONDS.toNanos(config.getBatchBudgetMillis());
+        for (final Task task : new ArrayList<>(tasks.values())) {
+            final World world = Bukkit.getWorld(task.worldName);
+            if (world == null) {
+                continue;
+            }
+            while (!task.isDone() && System.nanoTime() < deadline) {
+                final long start = System.nanoTime();
+                task.generateNext(world);
+                generateTimer.recordSince(start);
+            }
+            task.reportProgress();
+            if (task.isDone()) {
+                tasks.remove(task.worldName);
+                saveCheckpoint();
+                final String message = "Pre-generated " + task.total + " chunks of " + task.worldName;
+                Logger.info(message);
+                task.notifyRequester(ChatColor.GREEN + message);
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Drops pre-generation of worlds that were removed from worlds.yml.
+     */
+    private void dropUnmanaged() {
+        boolean dropped = false;
+        final Iterator<Task> iterator = tasks.values().iterator();
+        while (iterator.hasNext()) {
+            final Task task = iterator.next();
+            if (!task.managed || worldConfigList.get(task.worldName).isPresent()) {
+                continue;
+            }
+            iterator.remove();
+            dropped = true;
+            final String message = "Stopped pre-generation of " + task.worldName + " because it is no longer managed";
+            Logger.info(message);
+            task.notifyRequester(ChatColor.YELLOW + message);
+        }
+        if (dropped) {
+            saveCheckpoint();
+        }
+    }
+
+    private void saveCheckpoint() {
+        ticksSinceCheckpoint = 0;
+        final YamlConfiguration checkpoint = new YamlConfiguration();
+        for (final Task task : tasks.values()) {
+            final ConfigurationSection section = checkpoint.createSection(task.worldName);
+            section.set("center-x", task.centerX);
+            section.set("center-z", task.centerZ);
+            section.set("radius", task.radius);
+            section.set("managed", task.managed);
+            section.set("generated", task.generated);
+            task.spiral.save(section.createSection("spiral"));
+        }
+        // Serialize here because tasks are modified on the main thread
+        final String content = checkpoint.saveToString();
+        writeQueue.submit(checkpointPath, () -> content).exceptionally(t -> {
+            Logger.error("Failed to save pre-generation checkpoint", t);
+            return null;
+        });
+    }
+
+    private static final class Task {
+        private final String worldName;
+        private final int centerX;
+        private final int centerZ;
+        private final int radius;
+        private final long total;
+        /**
+         * Whether the world was in worlds.yml when pre-generation started
+         */
+        private final boolean managed;
+        private final CommandSender requester;
+        private final Spiral spiral;
+        private long generated;
+        private int reportedStep;
+
+        private Task(
+            final String worldName,
+            final int centerX,
+            final int centerZ,
+            final int radius,
+            final boolean managed,
+            final CommandSender requester) {
+            this(worldName, centerX, centerZ, radius, managed, requester, new Spiral(), 0);
+        }
+
+        private Task(
+            final String worldName,
+            final int centerX,
+            final int centerZ,
+            final int radius,
+            final boolean managed,
+            final CommandSender requester,
+            final Spiral spiral,
+            final long generated) {
+            this.worldName = worldName;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+            final long diameter = radius * 2L + 1;
+            this.total = diameter * diameter;
+            this.managed = managed;
+            this.requester = requester;
+            this.spiral = spiral;
+            this.generated = generated;
+            this.reportedStep = getProgressPercent() * PROGRESS_STEPS / 100;
+        }
+
+        /**
+         * Restores a task saved to the checkpoint. The spiral continues from the saved position.
+         */
+        private static Task load(final String worldName, final ConfigurationSection section) throws ConfigException {
+            if (section == null) {
+                throw new ConfigException("not a section");
+            }
+            final int radius = section.getInt("radius", -1);
+            if (radius < 0) {
+                throw new ConfigException("radius is missing or negative");
+            }
+            final long diameter = radius * 2L + 1;
+            final long generated = section.getLong("generated", -1);
+            if (generated < 0 || generated > diameter * diameter) {
+                throw new ConfigException("generated is out of range");
+            }
+            return new Task(
+                worldName,
+                section.getInt("center-x"),
+                section.getInt("center-z"),
+                radius,
+                section.getBoolean("managed", true),
+                null,
+                Spiral.load(section.getConfigurationSection("spiral")),
+                generated);
+        }
+
+        private void generateNext(final World world) {
+            final int x = centerX + spiral.x;
+            final int z = centerZ + spiral.z;
+            if (!world.isChunkLoaded(x, z)) {
+                world.loadChunk(x, z, true);
+                // Let the server unload it unless a player is nearby
+                world.unloadChunkRequest(x, z);
+            }
+            spiral.next();
+            generated++;
+        }
+
+        private boolean isDone() {
+            return generated >= total;
+        }
+
+        private int getProgressPercent() {
+            return (int) (generated * 100 / total);
+        }
+
+        private void notifyRequester(final String message) {
+            if (requester != null) {
+                CommandSenders.sendIfOnline(requester, message);
+            }
+        }
+
+        private void reportProgress() {
+            final int step = getProgressPercent() * PROGRESS_STEPS / 100;
+            if (step > reportedStep && !isDone()) {
+                reportedStep = step;
+                Logger.info(String.format(Locale.ROOT, "Pre-generating %s... (%d%%)", worldName, getProgressPercent()));
+            }
+        }
+    }
+
+    /**
+     * Square spiral starting at (0, 0).
+     * The first (2r+1)^2 positions cover the square of radius r.
+     */
+    private static final class Spiral {
+        private int x;
+        private int z;
+        private int dx = 1;
+        private int dz;
+        private int legLength = 1;
+        private int legProgress;
+        private boolean secondLeg;
+
+        private static Spiral load(final ConfigurationSection section) throws ConfigException {
+            if (section == null) {
+                throw new ConfigException("spiral is missing");
+            }
+            final Spiral spiral = new Spiral();
+            spiral.x = section.getInt("x");
+            spiral.z = section.getInt("z");
+            spiral.dx = section.getInt("dx");
+            spiral.dz = section.getInt("dz");
+            spiral.legLength = section.getInt("leg-length");
+            spiral.legProgress = section.getInt("leg-progress");
+            spiral.secondLeg = section.getBoolean("second-leg");
+            if (Math.abs(spiral.dx) + Math.abs(spiral.dz) != 1 ||
+                spiral.legLength < 1 ||
+                spiral.legProgress < 0 ||
+                spiral.legProgress >= spiral.legLength) {
+                throw new ConfigException("spiral is invalid");
+            }
+            return spiral;
+        }
+
+        private void save(final ConfigurationSection section) {
+            section.set("x", x);
+            section.set("z", z);
+            section.set("dx", dx);
+            section.set("dz", dz);
+            section.set("leg-length", legLength);
+            section.set("leg-progress", legProgress);
+            section.set("second-leg", secondLeg);
+        }
+
+        private void next() {
+            x += dx;
+            z += dz;
+            if (++legProgress < legLength) {
+                return;
+            }
+            legProgress = 0;
+            // Turn 90 degrees, and lengthen the leg after every second turn
+            final int oldDx = dx;
+            dx = -dz;
+            dz = oldDx;
+            if (secondLeg) {
+                legLength++;
+            }
+            secondLeg = !secondLeg;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package xyz.shirokuro.worlds;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+final class CommandSenders {
+
+    private CommandSenders() {
+        throw new UnsupportedOperationException("Static utility class");
+    }
+
+    /**
+     * Sends specified message unless {@code sender} is a player who has logged out.
+     * Used for messages sent after a long-running task, when the requester may be gone.
+     *
+     * @param sender sender to send to
+     * @param message message to send
+     */
+    static void sendIfOnline(final CommandSender sender, final String message) {
+        if (sender instanceof Player && !((Player) sender).isOnline()) {
+            return;
+        }
+        sender.sendMessage(message);
+    }
+}
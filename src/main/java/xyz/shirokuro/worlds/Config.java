@@ -4,24 +4,45 @@ import java.nio.file.Path;
 import java.nio.file.Files;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 
+/**
+ * Configuration loaded from config.yml.
+ * Values are held in an immutable, versioned {@link Snapshot} that is replaced by a single atomic swap.
+ */
 public final class Config {
 
+    private static final long DEFAULT_WORLD_LOAD_BUDGET_MILLIS = 20;
+    private static final long DEFAULT_BATCH_BUDGET_MILLIS = 5;
+    private static final double DEFAULT_PREGEN_MIN_TPS = 18;
+    private static final int DEFAULT_BACKUP_RETENTION = 7;
+    private static final long MIN_METRICS_EXPORT_INTERVAL_SECONDS = 5;
+
     private final Path filePath;
-    private boolean updateGameModeForAdmin;
-    private DefaultWorldConfig defaultWorldConfig;
-    private WorldCreationConfig defaultWorldCreationConfig;
+    private final FileWriteQueue writeQueue;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
 
-    public Config(final Path filePath) throws ConfigException, IOException {
+    public Config(final Path filePath, final FileWriteQueue writeQueue) throws ConfigException, IOException {
         this.filePath = Objects.requireNonNull(filePath, "filePath");
+        this.writeQueue = Objects.requireNonNull(writeQueue, "writeQueue");
         reload();
     }
 
-    public void reload() throws ConfigException, IOException {
+    public Changes reload() throws ConfigException, IOException {
+        return replace(read());
+    }
+
+    /**
+     * Parses config.yml without applying it to this instance.
+     *
+     * @return parsed configuration
+     * @throws ConfigException if config.yml is invalid
+     * @throws IOException if failed to read config.yml
+     */
+    public Snapshot read() throws ConfigException, IOException {
         if (!Files.isRegularFile(filePath)) {
             throw new IOException("Path: " + filePath + " is not a regular file!");
         }
@@ -32,46 +53,316 @@ public final class Config {
         if (!conf.contains("update-game-mode-for-admin")) {
             throw new ConfigKeyNotPresentException("update-game-mode-for-admin");
         }
-        this.updateGameModeForAdmin = conf.getBoolean("update-game-mode-for-admin");
+        final boolean updateGameModeForAdmin = conf.getBoolean("update-game-mode-for-admin");
+        final long worldLoadBudgetMillis =
+            conf.getLong("world-load-budget-millis", DEFAULT_WORLD_LOAD_BUDGET_MILLIS);
+        if (worldLoadBudgetMillis <= 0) {
+            throw new ConfigException("world-load-budget-millis must be positive");
+        }
+        final long batchBudgetMillis = conf.getLong("batch-budget-millis", DEFAULT_BATCH_BUDGET_MILLIS);
+        if (batchBudgetMillis <= 0) {
+            throw new ConfigException("batch-budget-millis must be positive");
+        }
+        final boolean watchFiles = conf.getBoolean("watch-files", false);
+        final long metricsExportIntervalSeconds = conf.getLong("metrics-export-interval-seconds", 0);
+        if (metricsExportIntervalSeconds != 0 && metricsExportIntervalSeconds < MIN_METRICS_EXPORT_INTERVAL_SECONDS) {
+            throw new ConfigException("metrics-export-interval-seconds must be 0 or at least " +
+                    MIN_METRICS_EXPORT_INTERVAL_SECONDS);
+        }
+        final double pregenMinTps = conf.getDouble("pregen-min-tps", DEFAULT_PREGEN_MIN_TPS);
+        if (pregenMinTps < 0 || pregenMinTps > 20) {
+            throw new ConfigException("pregen-min-tps must be between 0 and 20");
+        }
+        final int backupRetention = conf.getInt("backup-retention", DEFAULT_BACKUP_RETENTION);
+        if (backupRetention < 0) {
+            throw new ConfigException("backup-retention cannot be negative");
+        }
         if (!conf.contains("default-world-config")) {
             throw new ConfigKeyNotPresentException("default-world-config");
         }
-        this.defaultWorldConfig = DefaultWorldConfig.load(conf.getConfigurationSection("default-world-config"));
+        final DefaultWorldConfig defaultWorldConfig =
+            DefaultWorldConfig.load(conf.getConfigurationSection("default-world-config"));
         if (!conf.contains("default-creation-config")) {
             throw new ConfigKeyNotPresentException("default-creation-config");
         }
-        this.defaultWorldCreationConfig = WorldCreationConfig.load(conf.getConfigurationSection("default-creation-config"));
+        final WorldCreationConfig defaultWorldCreationConfig =
+            WorldCreationConfig.load(conf.getConfigurationSection("default-creation-config"));
+        return new Snapshot(
+            0,
+            updateGameModeForAdmin,
+            worldLoadBudgetMillis,
+            batchBudgetMillis,
+            watchFiles,
+            metricsExportIntervalSeconds,
+            pregenMinTps,
+            backupRetention,
+            defaultWorldConfig,
+            defaultWorldCreationConfig);
+    }
+
+    /**
+     * Replaces current configuration with specified one.
+     *
+     * @param snapshot configuration returned by {@link #read()}
+     * @return what was changed
+     */
+    public Changes replace(final Snapshot snapshot) {
+        Objects.requireNonNull(snapshot, "snapshot");
+        final Snapshot previous = this.snapshot.getAndUpdate(current -> snapshot.withVersion(
+            current == null ? 1 : current.version + 1));
+        return previous == null ? Changes.NONE : Changes.between(previous, snapshot);
     }
 
-    public CompletableFuture save() {
-        return CompletableFuture.runAsync(() -> {
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public CompletableFuture<Void> save() {
+        return writeQueue.submit(filePath, () -> {
+            final Snapshot snapshot = this.snapshot.get();
             final YamlConfiguration rootConfig = new YamlConfiguration();
-            rootConfig.set("update-game-mode-for-admin", updateGameModeForAdmin);
+            rootConfig.set("update-game-mode-for-admin", snapshot.updateGameModeForAdmin);
+            rootConfig.set("world-load-budget-millis", snapshot.worldLoadBudgetMillis);
+            rootConfig.set("batch-budget-millis", snapshot.batchBudgetMillis);
+            rootConfig.set("watch-files", snapshot.watchFiles);
+            rootConfig.set("metrics-export-interval-seconds", snapshot.metricsExportIntervalSeconds);
+            rootConfig.set("pregen-min-tps", snapshot.pregenMinTps);
+            rootConfig.set("backup-retention", snapshot.backupRetention);
             final ConfigurationSection defaultWorldConfigSection = rootConfig.createSection("default-world-config");
-            defaultWorldConfig.fillConfigurationSection(defaultWorldConfigSection);
+            snapshot.defaultWorldConfig.fillConfigurationSection(defaultWorldConfigSection);
             final ConfigurationSection defaultWorldCreationConfigSection = rootConfig.createSection("default-creation-config");
-            defaultWorldCreationConfig.fillConfigurationSection(defaultWorldCreationConfigSection);
-            try {
-                rootConfig.save(filePath.toFile());
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            snapshot.defaultWorldCreationConfig.fillConfigurationSection(defaultWorldCreationConfigSection);
+            return rootConfig.saveToString();
         });
     }
 
     public void setUpdateGameModeForAdmin(final boolean updateGameModeForAdmin) {
-        this.updateGameModeForAdmin = updateGameModeForAdmin;
+        snapshot.updateAndGet(current -> new Snapshot(
+            current.version + 1,
+            updateGameModeForAdmin,
+            current.worldLoadBudgetMillis,
+            current.batchBudgetMillis,
+            current.watchFiles,
+            current.metricsExportIntervalSeconds,
+            current.pregenMinTps,
+            current.backupRetention,
+            current.defaultWorldConfig,
+            current.defaultWorldCreationConfig));
     }
 
     public boolean doUpdateGameModeForAdmin() {
-        return updateGameModeForAdmin;
+        return snapshot.get().updateGameModeForAdmin;
+    }
+
+    /**
+     * Returns how long {@code WorldLoader} may spend on loading worlds in a tick.
+     *
+     * @return budget in milliseconds
+     */
+    public long getWorldLoadBudgetMillis() {
+        return snapshot.get().worldLoadBudgetMillis;
+    }
+
+    /**
+     * Returns how long {@code BatchApplier} may spend on bulk updates in a tick.
+     *
+     * @return budget in milliseconds
+     */
+    public long getBatchBudgetMillis() {
+        return snapshot.get().batchBudgetMillis;
+    }
+
+    /**
+     * Returns whether to reload configuration files automatically when they are modified.
+     *
+     * @return {@code true} if watching is enabled
+     */
+    public boolean doWatchFiles() {
+        return snapshot.get().watchFiles;
+    }
+
+    /**
+     * Returns interval of writing metrics to metrics.prom.
+     *
+     * @return interval in seconds, or 0 or less if disabled
+     */
+    public long getMetricsExportIntervalSeconds() {
+        return snapshot.get().metricsExportIntervalSeconds;
+    }
+
+    /**
+     * Returns TPS below which chunk pre-generation pauses.
+     *
+     * @return TPS between 0 and 20
+     */
+    public double getPregenMinTps() {
+        return snapshot.get().pregenMinTps;
+    }
+
+    /**
+     * Returns how many backups to keep per world.
+     *
+     * @return number of backups, or 0 to keep all
+     */
+    public int getBackupRetention() {
+        return snapshot.get().backupRetention;
     }
 
     public DefaultWorldConfig getDefaultWorldConfig() {
-        return defaultWorldConfig;
+        return snapshot.get().defaultWorldConfig;
     }
 
     public WorldCreationConfig getDefaultWorldCreationConfig() {
-        return defaultWorldCreationConfig;
+        return snapshot.get().defaultWorldCreationConfig;
+    }
+
+    /**
+     * Values loaded from config.yml.
+     * Version is not compared by {@link #equals(Object)}.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final boolean updateGameModeForAdmin;
+        private final long worldLoadBudgetMillis;
+        private final long batchBudgetMillis;
+        private final boolean watchFiles;
+        private final long metricsExportIntervalSeconds;
+        private final double pregenMinTps;
+        private final int backupRetention;
+        private final DefaultWorldConfig defaultWorldConfig;
+        private final WorldCreationConfig defaultWorldCreationConfig;
+
+        private Snapshot(
+            final long version,
+            final boolean updateGameModeForAdmin,
+            final long worldLoadBudgetMillis,
+            final long batchBudgetMillis,
+            final boolean watchFiles,
+            final long metricsExportIntervalSeconds,
+            final double pregenMinTps,
+            final int backupRetention,
+            final DefaultWorldConfig defaultWorldConfig,
+            final WorldCreationConfig defaultWorldCreationConfig) {
+            this.version = version;
+            this.updateGameModeForAdmin = updateGameModeForAdmin;
+            this.worldLoadBudgetMillis = worldLoadBudgetMillis;
+            this.batchBudgetMillis = batchBudgetMillis;
+            this.watchFiles = watchFiles;
+            this.metricsExportIntervalSeconds = metricsExportIntervalSeconds;
+            this.pregenMinTps = pregenMinTps;
+            this.backupRetention = backupRetention;
+            this.defaultWorldConfig = Objects.requireNonNull(defaultWorldConfig, "defaultWorldConfig");
+            this.defaultWorldCreationConfig =
+                Objects.requireNonNull(defaultWorldCreationConfig, "defaultWorldCreationConfig");
+        }
+
+        private Snapshot withVersion(final long version) {
+            return new Snapshot(
+                version,
+                updateGameModeForAdmin,
+                worldLoadBudgetMillis,
+                batchBudgetMillis,
+                watchFiles,
+                metricsExportIntervalSeconds,
+                pregenMinTps,
+                backupRetention,
+                defaultWorldConfig,
+                defaultWorldCreationConfig);
+        }
+
+        /**
+         * Returns version of this snapshot, which is incremented every time configuration is replaced.
+         *
+         * @return version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Snapshot)) {
+                return false;
+            }
+            final Snapshot other = (Snapshot) obj;
+            return updateGameModeForAdmin == other.updateGameModeForAdmin &&
+                worldLoadBudgetMillis == other.worldLoadBudgetMillis &&
+                batchBudgetMillis == other.batchBudgetMillis &&
+                watchFiles == other.watchFiles &&
+                metricsExportIntervalSeconds == other.metricsExportIntervalSeconds &&
+                Double.compare(pregenMinTps, other.pregenMinTps) == 0 &&
+                backupRetention == other.backupRetention &&
+                defaultWorldConfig.equals(other.defaultWorldConfig) &&
+                defaultWorldCreationConfig.equals(other.defaultWorldCreationConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                updateGameModeForAdmin,
+                worldLoadBudgetMillis,
+                batchBudgetMillis,
+                watchFiles,
+                metricsExportIntervalSeconds,
+                pregenMinTps,
+                backupRetention,
+                defaultWorldConfig,
+                defaultWorldCreationConfig);
+        }
+    }
+
+    /**
+     * Differences between two configurations.
+     */
+    public static final class Changes {
+        private static final Changes NONE = new Changes(false, false, false, false);
+
+        private final boolean updateGameModeForAdmin;
+        private final boolean defaultWorldConfig;
+        private final boolean defaultWorldCreationConfig;
+        private final boolean others;
+
+        private Changes(
+            final boolean updateGameModeForAdmin,
+            final boolean defaultWorldConfig,
+            final boolean defaultWorldCreationConfig,
+            final boolean others) {
+            this.updateGameModeForAdmin = updateGameModeForAdmin;
+            this.defaultWorldConfig = defaultWorldConfig;
+            this.defaultWorldCreationConfig = defaultWorldCreationConfig;
+            this.others = others;
+        }
+
+        private static Changes between(final Snapshot previous, final Snapshot current) {
+            return new Changes(
+                previous.updateGameModeForAdmin != current.updateGameModeForAdmin,
+                !previous.defaultWorldConfig.equals(current.defaultWorldConfig),
+                !previous.defaultWorldCreationConfig.equals(current.defaultWorldCreationConfig),
+                previous.worldLoadBudgetMillis != current.worldLoadBudgetMillis ||
+                    previous.batchBudgetMillis != current.batchBudgetMillis ||
+                    previous.watchFiles != current.watchFiles ||
+                    previous.metricsExportIntervalSeconds != current.metricsExportIntervalSeconds ||
+                    Double.compare(previous.pregenMinTps, current.pregenMinTps) != 0 ||
+                    previous.backupRetention != current.backupRetention);
+        }
+
+        public boolean isEmpty() {
+            return !updateGameModeForAdmin && !defaultWorldConfig && !defaultWorldCreationConfig && !others;
+        }
+
+        public boolean isUpdateGameModeForAdminChanged() {
+            return updateGameModeForAdmin;
+        }
+
+        public boolean isDefaultWorldConfigChanged() {
+            return defaultWorldConfig;
+        }
+
+        public boolean isDefaultWorldCreationConfigChanged() {
+            return defaultWorldCreationConfig;
+        }
     }
 }
@@ -0,0 +1,141 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Reloads config.yml and worlds.yml.
+ * Files are parsed off the main thread and applied on the main thread.
+ */
+public final class ConfigReloader {
+
+    private final Plugin plugin;
+    private final Config config;
+    private final WorldConfigList worldConfigList;
+    private final WorldLoader worldLoader;
+    private final GameModeEnforcer gameModeEnforcer;
+    private final BatchApplier batchApplier;
+    private final Metrics.Timer reloadTimer;
+
+    public ConfigReloader(
+        final Plugin plugin,
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final WorldLoader worldLoader,
+        final GameModeEnforcer gameModeEnforcer,
+        final BatchApplier batchApplier,
+        final Metrics metrics) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.worldLoader = Objects.requireNonNull(worldLoader, "worldLoader");
+        this.gameModeEnforcer = Objects.requireNonNull(gameModeEnforcer, "gameModeEnforcer");
+        this.batchApplier = Objects.requireNonNull(batchApplier, "batchApplier");
+        this.reloadTimer = metrics.timer("reload");
+    }
+
+    /**
+     * Reloads configuration files.
+     * Only worlds changed in the files, and players in those worlds, are updated.
+     *
+     * @return future that completes on the main thread with whether anything was changed.
+     *         Changes are applied across ticks, and the future completes after all of them are applied.
+     */
+    public CompletableFuture<Boolean> reload() {
+        final long start = System.nanoTime();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        result.whenComplete((changed, t) -> reloadTimer.recordSince(start));
+        CompletableFuture.runAsync(() -> {
+            final Config.Snapshot snapshot;
+            final Map<String, WorldConfig> worlds;
+            try {
+                snapshot = config.read();
+                worlds = worldConfigList.read();
+            } catch (IOException | ConfigException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            if (snapshot.equals(config.getSnapshot()) && worlds.equals(worldConfigList.getMap())) {
+                // Don't bother the main thread
+                result.complete(false);
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                final Map<String, WorldConfig> previousWorlds = worldConfigList.getMap();
+                final Config.Changes configChanges = config.replace(snapshot);
+                final WorldConfigList.Changes worldChanges = worldConfigList.replace(worlds);
+                final boolean changed = !configChanges.isEmpty() || !worldChanges.isEmpty();
+                apply(configChanges, worldChanges, previousWorlds).thenRun(() -> result.complete(changed));
+            });
+        }).exceptionally(t -> {
+            result.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Applies changes across ticks.
+     *
+     * @param previousWorlds worlds before the change, to tell whether time of a world was changed
+     * @return future that completes on the main thread once all changes are applied
+     */
+    private CompletableFuture<Integer> apply(
+        final Config.Changes configChanges,
+        final WorldConfigList.Changes worldChanges,
+        final Map<String, WorldConfig> previousWorlds) {
+        // Permissions are often reloaded together with configuration
+        gameModeEnforcer.invalidateAll();
+        worldChanges.getRemoved().forEach(worldLoader::cancel);
+        worldLoader.enqueue(worldChanges.getAdded().stream()
+            .filter(worldName -> worldConfigList.get(worldName)
+                .map(worldConfig -> worldConfig.getLoadMode() == WorldConfig.LoadMode.EAGER)
+                .orElse(false))
+            .collect(Collectors.toList()));
+        final Set<String> reconfigured = new HashSet<>(worldChanges.getAdded());
+        reconfigured.addAll(worldChanges.getModified());
+        if (configChanges.isDefaultWorldConfigChanged()) {
+            // Default game rules are layered under the ones of every world
+            reconfigured.addAll(worldConfigList.getMap().keySet());
+        }
+        final Set<String> affected = new HashSet<>(reconfigured);
+        if (configChanges.isUpdateGameModeForAdminChanged()) {
+            // Admins in every world may need their game mode updated
+            affected.addAll(worldConfigList.getMap().keySet());
+        }
+        final List<Player> players = new ArrayList<>();
+        for (final String worldName : affected) {
+            final World world = Bukkit.getWorld(worldName);
+            if (world != null) {
+                players.addAll(world.getPlayers());
+            }
+        }
+        // Batches are processed in order, so worlds are reconfigured before players are updated
+        batchApplier.submit(reconfigured, worldName -> {
+            final World world = Bukkit.getWorld(worldName);
+            if (world != null) {
+                worldConfigList.get(worldName).ifPresent(worldConfig -> {
+                    worldConfig.apply(world, config.getDefaultWorldConfig());
+                    worldConfig.applyTime(world, previousWorlds.get(worldName));
+                });
+            }
+        });
+        return batchApplier.submit(players, player -> {
+            if (player.isOnline()) {
+                worldConfigList.get(player.getWorld())
+                    .ifPresent(worldConfig -> gameModeEnforcer.enforce(player, worldConfig.getGameMode()));
+            }
+        });
+    }
+}
@@ -3,6 +3,9 @@ package xyz.shirokuro.worlds;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 public final class Coord {
@@ -50,6 +53,25 @@ public final class Coord {
         section.set("yaw", yaw);
     }
 
+    public void writeTo(final DataOutput out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(z);
+        out.writeFloat(yaw);
+        out.writeFloat(pitch);
+    }
+
+    public static Coord readFrom(final ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer");
+        final double x = buffer.getDouble();
+        final double y = buffer.getDouble();
+        final double z = buffer.getDouble();
+        final float yaw = buffer.getFloat();
+        final float pitch = buffer.getFloat();
+        return new Coord(x, y, z, yaw, pitch);
+    }
+
     /**
      * Creates {@code Location} with specified world
      *
@@ -78,6 +100,25 @@ public final class Coord {
     public float getYaw() {
         return yaw;
     }
-}
 
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Coord)) {
+            return false;
+        }
+        final Coord other = (Coord) obj;
+        return Double.compare(x, other.x) == 0 &&
+            Double.compare(y, other.y) == 0 &&
+            Double.compare(z, other.z) == 0 &&
+            Float.compare(pitch, other.pitch) == 0 &&
+            Float.compare(yaw, other.yaw) == 0;
+    }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, z, pitch, yaw);
+    }
+}
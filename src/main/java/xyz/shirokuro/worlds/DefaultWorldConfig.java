@@ -6,20 +6,20 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import lombok.NonNull;
 import org.bukkit.GameMode;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.entity.Player;
 
+/**
+ * Configuration applied to newly created/imported worlds. Instances are immutable.
+ */
 public final class DefaultWorldConfig {
 
-    private final ConcurrentMap<String, String> gameRules = new ConcurrentHashMap<>();
-    private boolean keepSpawnInMemory;
-    private GameMode gameMode;
-    private int time;
+    private final Map<String, String> gameRules;
+    private final boolean keepSpawnInMemory;
+    private final GameMode gameMode;
+    private final int time;
 
     private DefaultWorldConfig(
         final boolean keepSpawnInMemory,
@@ -29,20 +29,14 @@ public final class DefaultWorldConfig {
         this.keepSpawnInMemory = keepSpawnInMemory;
         this.gameMode = gameMode;
         this.time = time;
-        this.gameRules.putAll(gameRules);
-    }
-
-    public static DefaultWorldConfig copy(final DefaultWorldConfig source) {
-        return new DefaultWorldConfig(source.keepSpawnInMemory, source.gameMode, source.time, source.gameRules);
+        this.gameRules = Collections.unmodifiableMap(new HashMap<>(gameRules));
     }
 
     public static DefaultWorldConfig load(@NonNull final ConfigurationSection section)
         throws ConfigException {
 
-        if (!section.contains("time")) {
-            throw new ConfigKeyNotPresentException("time");
-        }
-        final int time = section.getInt("time");
+        // Omitted when not specified
+        final int time = section.getInt("time", -1);
         if (!section.contains("game-mode")) {
             throw new ConfigKeyNotPresentException("game-mode");
         }
@@ -60,7 +54,7 @@ public final class DefaultWorldConfig {
         final Map<String, String> gameRules = new HashMap<>();
         final ConfigurationSection gameRulesSection = section.getConfigurationSection("game-rules");
         if (gameRulesSection != null) {
-            for (String key : gameRulesSection.getKeys(false)) {
+            for (final String key : gameRulesSection.getKeys(false)) {
                 gameRules.put(key, gameRulesSection.getString(key));
             }
         }
@@ -70,7 +64,9 @@ public final class DefaultWorldConfig {
     public void fillConfigurationSection(final ConfigurationSection section) {
         section.set("game-mode", gameMode.name());
         section.set("keep-spawn-in-memory", keepSpawnInMemory);
-        section.set("time", time);
+        if (time != -1) {
+            section.set("time", time);
+        }
         final ConfigurationSection gameRulesSection = section.createSection("game-rules");
         gameRules.forEach((key, value) -> {
             gameRulesSection.set(key, value);
@@ -88,48 +84,65 @@ public final class DefaultWorldConfig {
     /**
      * Returns gamerules.
      *
-     * @return Map (Mutable)
+     * @return Map (Immutable)
      */
     public Map<String, String> getGameRules() {
         return gameRules;
     }
 
-    public void setKeepSpawnInMemory(boolean keepSpawnInMemory) {
-        this.keepSpawnInMemory = keepSpawnInMemory;
+    public DefaultWorldConfig withKeepSpawnInMemory(final boolean keepSpawnInMemory) {
+        return new DefaultWorldConfig(keepSpawnInMemory, gameMode, time, gameRules);
     }
 
-    public void setGameMode(GameMode gameMode) {
-        this.gameMode = gameMode;
+    public DefaultWorldConfig withGameMode(@NonNull final GameMode gameMode) {
+        return new DefaultWorldConfig(keepSpawnInMemory, gameMode, time, gameRules);
     }
 
-    public void updateGameModeIfNeeded(final Config config, final Player player) {
-        if (config.doUpdateGameModeForAdmin() || !player.hasPermission("worlds.admin")) {
-            player.setGameMode(gameMode);
-        }
+    public DefaultWorldConfig withGameRules(@NonNull final Map<String, String> gameRules) {
+        return new DefaultWorldConfig(keepSpawnInMemory, gameMode, time, gameRules);
     }
 
     public int getTime() {
         return time;
     }
 
-    public void setTime(final int time) {
-        this.time = time;
+    public DefaultWorldConfig withTime(final int time) {
+        return new DefaultWorldConfig(keepSpawnInMemory, gameMode, time, gameRules);
     }
 
     /**
      * Apply this configuration to specified world.
+     * Only game rules and keep-spawn-in-memory that differ from the current ones are written to the world.
+     * Time is always set if specified, since this is applied only to new worlds.
      */
     public void apply(final World world) {
         Objects.requireNonNull(world, "world");
-        world.setKeepSpawnInMemory(keepSpawnInMemory);
+        if (world.getKeepSpawnInMemory() != keepSpawnInMemory) {
+            world.setKeepSpawnInMemory(keepSpawnInMemory);
+        }
         if (time != -1) {
             world.setTime(time);
         }
-        gameRules.forEach((key, value) -> {
-            if (!world.isGameRule(key)) {
-                throw new IllegalArgumentException("Gamerule: " + key + " is invalid gamerule!");
-            }
-            world.setGameRuleValue(key, value);
-        });
+        gameRules.forEach((key, value) -> WorldConfig.applyGameRule(world, key, value));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DefaultWorldConfig)) {
+            return false;
+        }
+        final DefaultWorldConfig other = (DefaultWorldConfig) obj;
+        return keepSpawnInMemory == other.keepSpawnInMemory &&
+            gameMode == other.gameMode &&
+            time == other.time &&
+            gameRules.equals(other.gameRules);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keepSpawnInMemory, gameMode, time, gameRules);
     }
 }
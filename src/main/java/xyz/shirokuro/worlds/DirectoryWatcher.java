@@ -0,0 +1,146 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Watches entries of a directory on a dedicated thread.
+ * Bursts of events are debounced, so the listener is called once after
+ * the watched entries stay quiet for the debounce period.
+ * Events of entries rejected by the filter neither reach the listener nor extend the debounce period.
+ */
+public final class DirectoryWatcher {
+
+    private final WatchService watchService;
+    private final Thread thread;
+    private final long debounceMillis;
+    private final Predicate<Path> filter;
+    private final Consumer<Set<Path>> listener;
+
+    private DirectoryWatcher(
+        final Path directory,
+        final long debounceMillis,
+        final Predicate<Path> filter,
+        final Consumer<Set<Path>> listener) throws IOException {
+        this.debounceMillis = debounceMillis;
+        this.filter = filter;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+        this.thread = new Thread(this::run, "Worlds-Watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching specified directory.
+     *
+     * @param directory directory to watch
+     * @param debounceMillis quiet period before notifying
+     * @param listener receives names of changed entries (relative to {@code directory}) on the watcher thread
+     * @return started watcher
+     * @throws IOException if failed to watch the directory
+     */
+    public static DirectoryWatcher start(
+        final Path directory,
+        final long debounceMillis,
+        final Consumer<Set<Path>> listener) throws IOException {
+        return start(directory, debounceMillis, name -> true, listener);
+    }
+
+    /**
+     * Starts watching entries of specified directory accepted by {@code filter}.
+     *
+     * @param directory directory to watch
+     * @param debounceMillis quiet period before notifying
+     * @param filter accepts names of entries (relative to {@code directory}) to watch
+     * @param listener receives names of changed entries (relative to {@code directory}) on the watcher thread
+     * @return started watcher
+     * @throws IOException if failed to watch the directory
+     */
+    public static DirectoryWatcher start(
+        final Path directory,
+        final long debounceMillis,
+        final Predicate<Path> filter,
+        final Consumer<Set<Path>> listener) throws IOException {
+        Objects.requireNonNull(directory, "directory");
+        Objects.requireNonNull(filter, "filter");
+        Objects.requireNonNull(listener, "listener");
+        final DirectoryWatcher watcher = new DirectoryWatcher(directory, debounceMillis, filter, listener);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Logger.warn("Failed to close watch service", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Set<Path> changed = new HashSet<>();
+                if (!collect(watchService.take(), changed)) {
+                    continue;
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    final WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    if (collect(key, changed)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                    }
+                }
+                try {
+                    listener.accept(changed);
+                } catch (RuntimeException e) {
+                    Logger.error("An exception occurred while handling file changes", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // Closed
+        }
+    }
+
+    /**
+     * Adds names of changed entries accepted by the filter.
+     *
+     * @return {@code true} if any accepted entry changed
+     */
+    private boolean collect(final WatchKey key, final Set<Path> changed) {
+        boolean collected = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                continue;
+            }
+            final Path name = (Path) event.context();
+            if (filter.test(name)) {
+                changed.add(name);
+                collected = true;
+            }
+        }
+        key.reset();
+        return collected;
+    }
+}
@@ -0,0 +1,204 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Measures disk usage of worlds on background threads.
+ * Worlds are scanned in parallel, and the listing of each directory is cached with its modification time.
+ * A directory is listed again only if its modification time changed, that is, entries were added or removed.
+ * Otherwise only the known files are stat'ed, because region files grow in place without
+ * changing the modification time of their directory.
+ * This class is thread-safe.
+ */
+public final class DiskUsageAccountant {
+
+    private static final int THREADS = 2;
+
+    private final ConcurrentMap<String, WorldUsage> usages = new ConcurrentHashMap<>();
+    private final Path worldContainer;
+    private final ExecutorService executor;
+    private final Metrics.Timer scanTimer;
+    private CompletableFuture<Void> scan = CompletableFuture.completedFuture(null);
+
+    public DiskUsageAccountant(final Path worldContainer, final Metrics metrics) {
+        this.worldContainer = Objects.requireNonNull(worldContainer, "worldContainer");
+        this.scanTimer = metrics.timer("disk_usage_scan");
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            final Thread thread = new Thread(r, "Worlds-DiskUsage-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans specified worlds and forgets the others.
+     * If a scan is already running, a new scan is not started.
+     *
+     * @param worldNames names of the worlds to scan
+     * @return future that completes when the scan (or the running one) finishes
+     */
+    public synchronized CompletableFuture<Void> refresh(final Set<String> worldNames) {
+        Objects.requireNonNull(worldNames, "worldNames");
+        if (!scan.isDone()) {
+            return scan;
+        }
+        final long start = System.nanoTime();
+        usages.keySet().retainAll(worldNames);
+        final List<CompletableFuture<Void>> scans = worldNames.stream()
+            .map(worldName -> CompletableFuture.runAsync(() -> scanWorld(worldName), executor))
+            .collect(Collectors.toList());
+        this.scan = CompletableFuture.allOf(scans.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((v, t) -> {
+                scanTimer.recordSince(start);
+                if (t != null) {
+                    Logger.warn("Failed to measure disk usage", t);
+                }
+            });
+        return scan;
+    }
+
+    /**
+     * Returns size of specified world measured by the last scan.
+     *
+     * @param worldName name of the world
+     * @return size in bytes, or empty if the world hasn't been scanned
+     */
+    public OptionalLong getSize(final String worldName) {
+        final WorldUsage usage = usages.get(worldName);
+        return usage == null ? OptionalLong.empty() : OptionalLong.of(usage.totalBytes);
+    }
+
+    /**
+     * Returns sizes of the scanned worlds.
+     *
+     * @return world name to size in bytes
+     */
+    public Map<String, Long> getSizes() {
+        final Map<String, Long> result = new HashMap<>();
+        usages.forEach((worldName, usage) -> result.put(worldName, usage.totalBytes));
+        return result;
+    }
+
+    public synchronized boolean isScanning() {
+        return !scan.isDone();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scanWorld(final String worldName) {
+        final Path worldDir = worldContainer.resolve(worldName);
+        if (!Files.isDirectory(worldDir)) {
+            usages.remove(worldName);
+            return;
+        }
+        final WorldUsage previous = usages.get(worldName);
+        final Map<Path, DirectoryListing> listings = new HashMap<>();
+        try {
+            final long totalBytes = scanDirectory(
+                worldDir,
+                previous == null ? Collections.emptyMap() : previous.listings,
+                listings);
+            usages.put(worldName, new WorldUsage(listings, totalBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scans specified directory recursively.
+     *
+     * @param dir directory to scan
+     * @param previous listings of the previous scan
+     * @param next receives listings of this scan
+     * @return total size of the files in bytes
+     */
+    private static long scanDirectory(
+        final Path dir,
+        final Map<Path, DirectoryListing> previous,
+        final Map<Path, DirectoryListing> next) throws IOException {
+        final long modified = Files.getLastModifiedTime(dir).toMillis();
+        final DirectoryListing previousListing = previous.get(dir);
+        final DirectoryListing listing;
+        if (previousListing != null && previousListing.modified == modified) {
+            listing = previousListing;
+        } else {
+            final List<String> files = new ArrayList<>();
+            final List<String> directories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (final Path entry : stream) {
+                    (Files.isDirectory(entry) ? directories : files).add(entry.getFileName().toString());
+                }
+            }
+            listing = new DirectoryListing(modified, files, directories);
+        }
+        next.put(dir, listing);
+        long totalBytes = 0;
+        for (final String file : listing.files) {
+            try {
+                totalBytes += Files.readAttributes(dir.resolve(file), BasicFileAttributes.class).size();
+            } catch (NoSuchFileException ignored) {
+                // Deleted after listing
+            }
+        }
+        for (final String directory : listing.directories) {
+            try {
+                totalBytes += scanDirectory(dir.resolve(directory), previous, next);
+            } catch (NoSuchFileException ignored) {
+                // Deleted after listing
+            }
+        }
+        return totalBytes;
+    }
+
+    private static final class WorldUsage {
+        private final Map<Path, DirectoryListing> listings;
+        private final long totalBytes;
+
+        private WorldUsage(final Map<Path, DirectoryListing> listings, final long totalBytes) {
+            this.listings = listings;
+            this.totalBytes = totalBytes;
+        }
+    }
+
+    private static final class DirectoryListing {
+        private final long modified;
+        private final List<String> files;
+        private final List<String> directories;
+
+        private DirectoryListing(final long modified, final List<String> files, final List<String> directories) {
+            this.modified = modified;
+            this.files = files;
+            this.directories = directories;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+final class FileUtils {
+
+    private FileUtils() {
+        throw new UnsupportedOperationException("Static utility class");
+    }
+
+    /**
+     * Deletes specified file or directory with its contents. Does nothing if it doesn't exist.
+     *
+     * @param path file or directory to delete
+     * @throws IOException if failed to delete
+     */
+    static void deleteRecursively(final Path path) throws IOException {
+        if (Files.notExists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
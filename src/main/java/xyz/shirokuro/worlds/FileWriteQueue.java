@@ -0,0 +1,228 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Writes files on a single dedicated thread.
+ * Writes to the same file requested within the delay are coalesced into one write,
+ * and every write replaces the file atomically via a temporary file.
+ */
+public final class FileWriteQueue {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final Map<Path, PendingWrite> pending = new HashMap<>();
+    /**
+     * Checksums of the last content written to each file
+     */
+    private final ConcurrentMap<Path, Long> writtenChecksums = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    private final long delayMillis;
+    private final Metrics.Timer writeTimer;
+    private final LongAdder bytesWritten;
+
+    public FileWriteQueue(final long delayMillis, final Metrics metrics) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis cannot be negative");
+        }
+        this.delayMillis = delayMillis;
+        this.writeTimer = metrics.timer("file_write");
+        this.bytesWritten = metrics.counter("bytes_written");
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "Worlds-FileWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a write of specified file.
+     * {@code contentSupplier} is called on the writer thread right before writing,
+     * so the latest content is written even if more changes happen in the meantime.
+     *
+     * @param path file to write
+     * @param contentSupplier supplier of the file content
+     * @return future that completes once the content is written
+     */
+    public CompletableFuture<Void> submit(final Path path, final Supplier<String> contentSupplier) {
+        return submit(path, contentSupplier, true);
+    }
+
+    /**
+     * Schedules a write of specified file like {@link #submit(Path, Supplier)}.
+     *
+     * @param path file to write
+     * @param contentSupplier supplier of the file content
+     * @param recordMetrics whether to record the write to {@code file_write} and {@code bytes_written}.
+     *     This is {@code false} for files that export metrics, so exporting doesn't change what is exported.
+     * @return future that completes once the content is written
+     */
+    public CompletableFuture<Void> submit(
+        final Path path,
+        final Supplier<String> contentSupplier,
+        final boolean recordMetrics) {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(contentSupplier, "contentSupplier");
+        synchronized (pending) {
+            final PendingWrite existing = pending.get(path);
+            if (existing != null) {
+                existing.contentSupplier = contentSupplier;
+                return existing.future;
+            }
+            final PendingWrite write = new PendingWrite(contentSupplier, recordMetrics);
+            pending.put(path, write);
+            executor.schedule(() -> write(path), delayMillis, TimeUnit.MILLISECONDS);
+            return write.future;
+        }
+    }
+
+    /**
+     * Runs specified task on the writer thread.
+     * Tasks and writes are executed one by one in the order they are started.
+     *
+     * @param task task to run
+     * @return future that completes when the task finishes
+     */
+    public CompletableFuture<Void> execute(final Runnable task) {
+        Objects.requireNonNull(task, "task");
+        return CompletableFuture.runAsync(task, executor);
+    }
+
+    /**
+     * Writes all pending files immediately and stops the writer thread.
+     * Blocks until the writes complete.
+     */
+    public void shutdown() {
+        final CompletableFuture<Void> flush = CompletableFuture.runAsync(() -> {
+            final List<Path> paths;
+            synchronized (pending) {
+                paths = new ArrayList<>(pending.keySet());
+            }
+            paths.forEach(this::write);
+        }, executor);
+        executor.shutdown();
+        try {
+            flush.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Logger.error("Failed to flush pending writes", e.getCause());
+        } catch (TimeoutException e) {
+            Logger.error("Timed out while flushing pending writes", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(final Path path) {
+        final PendingWrite write;
+        synchronized (pending) {
+            write = pending.remove(path);
+        }
+        if (write == null) {
+            // Already written by flush
+            return;
+        }
+        try {
+            writeNow(path, write.contentSupplier.get().getBytes(StandardCharsets.UTF_8), write.recordMetrics);
+            write.future.complete(null);
+        } catch (IOException e) {
+            write.future.completeExceptionally(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            write.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Replaces content of specified file atomically.
+     * Must be called from the writer thread (e.g. in {@link #execute(Runnable)}).
+     *
+     * @param path file to write
+     * @param content new content of the file
+     * @throws IOException if failed to write
+     */
+    void writeNow(final Path path, final byte[] content) throws IOException {
+        writeNow(path, content, true);
+    }
+
+    private void writeNow(final Path path, final byte[] content, final boolean recordMetrics) throws IOException {
+        final long start = System.nanoTime();
+        final Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path tempFile = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            writtenChecksums.put(path.toAbsolutePath(), checksum(content));
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        if (recordMetrics) {
+            writeTimer.recordSince(start);
+            bytesWritten.add(content.length);
+        }
+    }
+
+    /**
+     * Returns whether specified content is the last one written to the file by this queue.
+     * This is used to tell own writes from modifications by others.
+     *
+     * @param path path to the file
+     * @param content current content of the file
+     * @return {@code true} if the content was written by this queue
+     */
+    public boolean isWrittenByThis(final Path path, final byte[] content) {
+        final Long written = writtenChecksums.get(path.toAbsolutePath());
+        return written != null && written == checksum(content);
+    }
+
+    private static long checksum(final byte[] content) {
+        final CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    private static final class PendingWrite {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final boolean recordMetrics;
+        private volatile Supplier<String> contentSupplier;
+
+        PendingWrite(final Supplier<String> contentSupplier, final boolean recordMetrics) {
+            this.contentSupplier = contentSupplier;
+            this.recordMetrics = recordMetrics;
+        }
+    }
+}
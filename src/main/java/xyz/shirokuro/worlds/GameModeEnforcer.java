@@ -0,0 +1,156 @@
+package xyz.shirokuro.worlds;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.GameMode;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Updates game mode of players when they join or change worlds.
+ * Players who already have the game mode are skipped without checking permission, and
+ * whether a player bypasses updates ("worlds.admin") is cached for a short period.
+ * Bukkit has no event for permission changes, so cached decisions expire after
+ * {@link #ADMIN_CACHE_TTL_NANOS} and are dropped on join, quit and reload.
+ * All methods except counters must be called from the main thread.
+ */
+public final class GameModeEnforcer implements Listener {
+
+    private static final long ADMIN_CACHE_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Config config;
+    private final WorldConfigTable worldConfigTable;
+    private final Map<UUID, AdminDecision> decisions = new HashMap<>();
+    private final LongAdder applied;
+    private final LongAdder skipped;
+    private final LongAdder bypassed;
+    private final Metrics.Timer handlerTimer;
+
+    public GameModeEnforcer(final Config config, final WorldConfigTable worldConfigTable, final Metrics metrics) {
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigTable = Objects.requireNonNull(worldConfigTable, "worldConfigTable");
+        this.applied = metrics.counter("game_mode_applied");
+        this.skipped = metrics.counter("game_mode_skipped");
+        this.bypassed = metrics.counter("game_mode_bypassed");
+        this.handlerTimer = metrics.timer("event_handler");
+    }
+
+    /**
+     * Sets game mode of specified player unless the player already has it or bypasses updates.
+     *
+     * @param player player to update
+     * @param gameMode game mode of the world where the player is
+     */
+    public void enforce(final Player player, final GameMode gameMode) {
+        if (player.getGameMode() == gameMode) {
+            skipped.increment();
+            return;
+        }
+        if (!config.doUpdateGameModeForAdmin() && isAdmin(player)) {
+            bypassed.increment();
+            return;
+        }
+        player.setGameMode(gameMode);
+        applied.increment();
+    }
+
+    /**
+     * Drops cached decision of specified player.
+     * Call this after changing permissions of the player.
+     *
+     * @param player player whose permissions were changed
+     */
+    public void invalidate(final Player player) {
+        decisions.remove(player.getUniqueId());
+    }
+
+    /**
+     * Drops all cached decisions.
+     */
+    public void invalidateAll() {
+        decisions.clear();
+    }
+
+    /**
+     * Returns how many times game mode was changed.
+     *
+     * @return count
+     */
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    /**
+     * Returns how many updates were skipped because the player already had the game mode.
+     *
+     * @return count
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * Returns how many updates were skipped because the player has "worlds.admin".
+     *
+     * @return count
+     */
+    public long getBypassedCount() {
+        return bypassed.sum();
+    }
+
+    private boolean isAdmin(final Player player) {
+        final long now = System.nanoTime();
+        AdminDecision decision = decisions.get(player.getUniqueId());
+        if (decision == null) {
+            decision = new AdminDecision();
+            decisions.put(player.getUniqueId(), decision);
+        } else if (now - decision.checkedAt < ADMIN_CACHE_TTL_NANOS) {
+            return decision.admin;
+        }
+        decision.admin = player.hasPermission("worlds.admin");
+        decision.checkedAt = now;
+        return decision.admin;
+    }
+
+    @EventHandler
+    public void onWorldChange(final PlayerChangedWorldEvent event) {
+        final long start = System.nanoTime();
+        enforce(event.getPlayer());
+        handlerTimer.recordSince(start);
+    }
+
+    @EventHandler
+    public void onJoin(final PlayerJoinEvent event) {
+        final long start = System.nanoTime();
+        final Player player = event.getPlayer();
+        invalidate(player);
+        enforce(player);
+        handlerTimer.recordSince(start);
+    }
+
+    private void enforce(final Player player) {
+        final WorldConfig worldConfig = worldConfigTable.get(player.getWorld());
+        if (worldConfig != null) {
+            enforce(player, worldConfig.getGameMode());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(final PlayerQuitEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    private static final class AdminDecision {
+        private boolean admin;
+        private long checkedAt;
+    }
+}
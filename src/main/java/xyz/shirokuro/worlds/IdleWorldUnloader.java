@@ -0,0 +1,111 @@
+package xyz.shirokuro.worlds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Unloads managed worlds that have been empty for longer than their {@code idle-unload-after}.
+ * An explicit {@code idle-unload-after} takes precedence over {@code keep-spawn-in-memory},
+ * which only keeps spawn chunks loaded while the world is loaded.
+ * Worlds being pre-generated are treated as occupied, so pre-generation isn't paused by unloading them.
+ */
+public final class IdleWorldUnloader implements Listener {
+
+    private static final long CHECK_INTERVAL_TICKS = 20 * 10;
+
+    /**
+     * World name to the last time (System.nanoTime()) a player was in the world
+     */
+    private final Map<String, Long> lastOccupied = new HashMap<>();
+    private final Plugin plugin;
+    private final WorldConfigList worldConfigList;
+    private final ChunkPregenerator pregenerator;
+    private final Metrics.Timer unloadTimer;
+
+    public IdleWorldUnloader(
+        final Plugin plugin,
+        final WorldConfigList worldConfigList,
+        final ChunkPregenerator pregenerator,
+        final Metrics metrics) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.pregenerator = Objects.requireNonNull(pregenerator, "pregenerator");
+        this.unloadTimer = metrics.timer("world_unload");
+    }
+
+    /**
+     * Starts checking idle worlds periodically.
+     */
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::check, CHECK_INTERVAL_TICKS, CHECK_INTERVAL_TICKS);
+    }
+
+    private void check() {
+        final long now = System.nanoTime();
+        final List<World> worlds = Bukkit.getWorlds();
+        final List<World> idleWorlds = new ArrayList<>();
+        // The default world cannot be unloaded
+        for (final World world : worlds.subList(1, worlds.size())) {
+            final WorldConfig worldConfig = worldConfigList.get(world).orElse(null);
+            if (worldConfig == null) {
+                continue;
+            }
+            if (!world.getPlayers().isEmpty() || pregenerator.isRunning(world.getName())) {
+                lastOccupied.put(world.getName(), now);
+                continue;
+            }
+            final long idleUnloadAfter = worldConfig.getIdleUnloadAfter();
+            if (idleUnloadAfter < 0) {
+                continue;
+            }
+            final long since = lastOccupied.computeIfAbsent(world.getName(), k -> now);
+            if (now - since >= TimeUnit.SECONDS.toNanos(idleUnloadAfter)) {
+                idleWorlds.add(world);
+            }
+        }
+        idleWorlds.forEach(this::unload);
+    }
+
+    private void unload(final World world) {
+        final String worldName = world.getName();
+        final long start = System.nanoTime();
+        final boolean unloaded = Bukkit.unloadWorld(world, true);
+        unloadTimer.recordSince(start);
+        if (unloaded) {
+            Logger.info("Unloaded idle world: " + worldName);
+        } else {
+            Logger.warn("Failed to unload idle world: " + worldName);
+            // Try again after the timeout
+            lastOccupied.put(worldName, System.nanoTime());
+        }
+    }
+
+    @EventHandler
+    public void onChangedWorld(final PlayerChangedWorldEvent event) {
+        lastOccupied.put(event.getFrom().getName(), System.nanoTime());
+    }
+
+    @EventHandler
+    public void onQuit(final PlayerQuitEvent event) {
+        lastOccupied.put(event.getPlayer().getWorld().getName(), System.nanoTime());
+    }
+
+    // Another plugin may cancel the unload, and the world stays loaded then
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        lastOccupied.remove(event.getWorld().getName());
+    }
+}
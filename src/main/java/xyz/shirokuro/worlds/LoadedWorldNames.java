@@ -0,0 +1,45 @@
+package xyz.shirokuro.worlds;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Names of the loaded worlds, indexed for tab completion.
+ */
+public final class LoadedWorldNames implements Listener {
+
+    private final WorldNameIndex index = new WorldNameIndex();
+
+    /**
+     * Rebuilds the index from loaded worlds. Must be called from the main thread.
+     */
+    public void refresh() {
+        index.replaceAll(Bukkit.getWorlds().stream()
+            .map(World::getName)
+            .collect(Collectors.toSet()));
+    }
+
+    /**
+     * @see WorldNameIndex#search(String)
+     */
+    public List<String> search(final String prefix) {
+        return index.search(prefix);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final WorldLoadEvent event) {
+        index.add(event.getWorld().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        index.remove(event.getWorld().getName());
+    }
+}
@@ -0,0 +1,157 @@
+package xyz.shirokuro.worlds;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Timers, counters and gauges describing what Worlds is doing.
+ * Recording is lock-free and allocation-free, so it can be used on hot paths.
+ * Metrics are created on first use and never removed.
+ */
+public final class Metrics {
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns timer by specified name.
+     *
+     * @param name name of the timer in snake_case
+     * @return timer
+     */
+    public Timer timer(final String name) {
+        return timers.computeIfAbsent(Objects.requireNonNull(name, "name"), k -> new Timer());
+    }
+
+    /**
+     * Returns counter by specified name.
+     *
+     * @param name name of the counter in snake_case
+     * @return counter
+     */
+    public LongAdder counter(final String name) {
+        return counters.computeIfAbsent(Objects.requireNonNull(name, "name"), k -> new LongAdder());
+    }
+
+    /**
+     * Registers a value that is read when metrics are exported.
+     *
+     * @param name name of the gauge in snake_case
+     * @param supplier supplier of the value. It may be called from any thread.
+     */
+    public void gauge(final String name, final LongSupplier supplier) {
+        gauges.put(Objects.requireNonNull(name, "name"), Objects.requireNonNull(supplier, "supplier"));
+    }
+
+    public Map<String, Timer> getTimers() {
+        return Collections.unmodifiableMap(new TreeMap<>(timers));
+    }
+
+    public Map<String, Long> getCounters() {
+        final Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    public Map<String, Long> getGauges() {
+        final Map<String, Long> result = new TreeMap<>();
+        gauges.forEach((name, supplier) -> result.put(name, supplier.getAsLong()));
+        return result;
+    }
+
+    /**
+     * Histogram of durations.
+     * Durations are counted in power-of-two buckets of nanoseconds,
+     * so percentiles are accurate to within a factor of two.
+     */
+    public static final class Timer {
+        private static final int BUCKETS = 64;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records a duration.
+         *
+         * @param nanos duration in nanoseconds
+         */
+        public void record(final long nanos) {
+            final long value = Math.max(0, nanos);
+            // Bucket i holds values in [2^i, 2^(i+1)), and 0 goes to bucket 0
+            buckets[Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(value))].increment();
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        /**
+         * Records time elapsed since specified {@code System.nanoTime()}.
+         *
+         * @param startNanos value of {@code System.nanoTime()} at the start
+         */
+        public void recordSince(final long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public double getMeanMillis() {
+            final long count = getCount();
+            return count == 0 ? 0 : toMillis(getTotalNanos()) / count;
+        }
+
+        /**
+         * Returns estimated percentile.
+         *
+         * @param quantile quantile between 0 and 1
+         * @return upper bound of the bucket that contains the percentile, in milliseconds
+         */
+        public double getPercentileMillis(final double quantile) {
+            final long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(count * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    final long upperBound = i >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return toMillis(Math.min(upperBound, getMaxNanos()));
+                }
+            }
+            return toMillis(getMaxNanos());
+        }
+
+        private static double toMillis(final long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package xyz.shirokuro.worlds;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes {@link Metrics} over JMX as read-only attributes.
+ * Timers are exposed as {@code <name>_count}, {@code <name>_mean_ms}, {@code <name>_p50_ms},
+ * {@code <name>_p99_ms} and {@code <name>_max_ms}.
+ */
+public final class MetricsMBean implements DynamicMBean {
+
+    private final Metrics metrics;
+    private final ObjectName objectName;
+
+    private MetricsMBean(final Metrics metrics) throws JMException {
+        this.metrics = metrics;
+        this.objectName = new ObjectName("xyz.shirokuro.worlds:type=Metrics");
+    }
+
+    /**
+     * Registers an MBean of specified metrics to the platform MBean server.
+     *
+     * @param metrics metrics to expose
+     * @return registered MBean
+     * @throws JMException if failed to register
+     */
+    public static MetricsMBean register(final Metrics metrics) throws JMException {
+        Objects.requireNonNull(metrics, "metrics");
+        final MetricsMBean mbean = new MetricsMBean(metrics);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, mbean.objectName);
+        return mbean;
+    }
+
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            Logger.warn("Failed to unregister MBean: " + objectName, e);
+        }
+    }
+
+    private Map<String, Object> attributes() {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        metrics.getTimers().forEach((name, timer) -> {
+            attributes.put(name + "_count", timer.getCount());
+            attributes.put(name + "_mean_ms", timer.getMeanMillis());
+            attributes.put(name + "_p50_ms", timer.getPercentileMillis(0.5));
+            attributes.put(name + "_p99_ms", timer.getPercentileMillis(0.99));
+            attributes.put(name + "_max_ms", timer.getMaxNanos() / 1_000_000.0);
+        });
+        attributes.putAll(metrics.getCounters());
+        attributes.putAll(metrics.getGauges());
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Object value = attributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] names) {
+        final Map<String, Object> attributes = attributes();
+        final AttributeList list = new AttributeList();
+        for (final String name : names) {
+            final Object value = attributes.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature)
+        throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "No operations are supported");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final Map<String, Object> attributes = attributes();
+        final MBeanAttributeInfo[] infos = attributes.entrySet().stream()
+            .map(entry -> new MBeanAttributeInfo(
+                entry.getKey(),
+                entry.getValue().getClass().getName(),
+                entry.getKey(),
+                true,
+                false,
+                false))
+            .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(
+            getClass().getName(),
+            "Metrics of Worlds",
+            infos,
+            null,
+            new MBeanOperationInfo[0],
+            null);
+    }
+}
@@ -0,0 +1,76 @@
+package xyz.shirokuro.worlds;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link Metrics} to a file in the Prometheus text exposition format,
+ * so it can be collected by node_exporter's textfile collector.
+ */
+public final class PrometheusExporter {
+
+    private static final String PREFIX = "worlds_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Metrics metrics;
+    private final Path filePath;
+    private final FileWriteQueue writeQueue;
+
+    public PrometheusExporter(final Metrics metrics, final Path filePath, final FileWriteQueue writeQueue) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.filePath = Objects.requireNonNull(filePath, "filePath");
+        this.writeQueue = Objects.requireNonNull(writeQueue, "writeQueue");
+    }
+
+    /**
+     * Schedules a write of current metrics.
+     */
+    public void export() {
+        writeQueue.submit(filePath, this::format, false).exceptionally(t -> {
+            Logger.warn("Failed to write metrics to " + filePath, t);
+            return null;
+        });
+    }
+
+    /**
+     * Formats current metrics.
+     *
+     * @return metrics in the Prometheus text format
+     */
+    public String format() {
+        final StringBuilder builder = new StringBuilder();
+        metrics.getTimers().forEach((name, timer) -> {
+            final String metricName = PREFIX + name + "_seconds";
+            builder.append("# TYPE ").append(metricName).append(" summary\n");
+            for (final double quantile : QUANTILES) {
+                builder.append(metricName).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(format(timer.getPercentileMillis(quantile) / 1000)).append('\n');
+            }
+            builder.append(metricName).append("_sum ")
+                .append(format(timer.getTotalNanos() / (double) TimeUnit.SECONDS.toNanos(1))).append('\n');
+            builder.append(metricName).append("_count ").append(timer.getCount()).append('\n');
+        });
+        append(builder, metrics.getCounters(), "counter", "_total");
+        append(builder, metrics.getGauges(), "gauge", "");
+        return builder.toString();
+    }
+
+    private static void append(
+        final StringBuilder builder,
+        final Map<String, Long> values,
+        final String type,
+        final String suffix) {
+        values.forEach((name, value) -> {
+            final String metricName = PREFIX + name + suffix;
+            builder.append("# TYPE ").append(metricName).append(' ').append(type).append('\n');
+            builder.append(metricName).append(' ').append(value).append('\n');
+        });
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+}
@@ -0,0 +1,83 @@
+package xyz.shirokuro.worlds;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Measures TPS from intervals between ticks.
+ * Bukkit has no API for TPS, so a task is run every tick to record when ticks happen.
+ * All methods must be called from the main thread.
+ */
+public final class TickMonitor {
+
+    private static final double MAX_TPS = 20;
+    /**
+     * Number of ticks to average over (5 seconds at full speed)
+     */
+    private static final int SAMPLES = 100;
+
+    private final long[] intervals = new long[SAMPLES];
+    private final Plugin plugin;
+    private long totalNanos;
+    private int samples;
+    private int index;
+    private long lastTickNanos;
+    private BukkitTask task;
+
+    public TickMonitor(final Plugin plugin) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+    }
+
+    /**
+     * Starts measuring. Does nothing if already started.
+     */
+    public void start() {
+        if (task != null) {
+            return;
+        }
+        lastTickNanos = System.nanoTime();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Stops measuring and forgets measured intervals.
+     */
+    public void stop() {
+        if (task == null) {
+            return;
+        }
+        task.cancel();
+        task = null;
+        Arrays.fill(intervals, 0);
+        totalNanos = 0;
+        samples = 0;
+        index = 0;
+    }
+
+    /**
+     * Returns average TPS of recent ticks.
+     *
+     * @return TPS, or 20 if not enough ticks have been measured
+     */
+    public double getTps() {
+        if (samples < SAMPLES / 5) {
+            return MAX_TPS;
+        }
+        final double secondsPerTick = totalNanos / (double) samples / TimeUnit.SECONDS.toNanos(1);
+        return Math.min(MAX_TPS, 1 / secondsPerTick);
+    }
+
+    private void tick() {
+        final long now = System.nanoTime();
+        final long interval = now - lastTickNanos;
+        lastTickNanos = now;
+        totalNanos += interval - intervals[index];
+        intervals[index] = interval;
+        index = (index + 1) % SAMPLES;
+        samples = Math.min(SAMPLES, samples + 1);
+    }
+}
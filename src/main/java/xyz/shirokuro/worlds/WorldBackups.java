@@ -0,0 +1,220 @@
+package xyz.shirokuro.worlds;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Takes and restores backups of worlds with {@link BackupStore}.
+ * Auto-save of a loaded world is paused while it is backed up, so its files don't change during the copy,
+ * and the world can't be unloaded until the backup finishes.
+ * All methods must be called from the main thread.
+ */
+public final class WorldBackups implements Listener {
+
+    /**
+     * Chunks are written by a background thread of the server after {@code World#save()} returns.
+     * There is no API to wait for it, so the backup starts after this delay.
+     */
+    private static final long FLUSH_DELAY_TICKS = 20 * 2;
+
+    /**
+     * Worlds being backed up or restored
+     */
+    private final Set<String> busyWorlds = new HashSet<>();
+    private final Plugin plugin;
+    private final Config config;
+    private final WorldConfigList worldConfigList;
+    private final WorldLoader worldLoader;
+    private final BackupStore store;
+
+    public WorldBackups(
+        final Plugin plugin,
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final WorldLoader worldLoader,
+        final BackupStore store) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.worldLoader = Objects.requireNonNull(worldLoader, "worldLoader");
+        this.store = Objects.requireNonNull(store, "store");
+    }
+
+    /**
+     * Takes a backup of specified world, and then deletes backups exceeding {@code backup-retention}.
+     *
+     * @param worldName name of the world
+     * @return future that completes with the result
+     */
+    public CompletableFuture<BackupStore.Result> backup(final String worldName) {
+        Objects.requireNonNull(worldName, "worldName");
+        final World world = Bukkit.getWorld(worldName);
+        final Path worldDir = getWorldDir(worldName);
+        if (!Files.isDirectory(worldDir)) {
+            return failed(new IllegalArgumentException("World: " + worldName + " not found"));
+        }
+        if (!busyWorlds.add(worldName)) {
+            return failed(new IllegalStateException("World: " + worldName + " is being backed up or restored"));
+        }
+        final CompletableFuture<Void> flushed;
+        final boolean autoSave;
+        if (world != null) {
+            autoSave = world.isAutoSave();
+            world.save();
+            world.setAutoSave(false);
+            flushed = delay(FLUSH_DELAY_TICKS);
+        } else {
+            autoSave = false;
+            flushed = CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<BackupStore.Result> backup =
+            flushed.thenCompose(v -> store.backup(worldName, worldDir));
+        backup.whenComplete((result, t) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            busyWorlds.remove(worldName);
+            if (world != null) {
+                world.setAutoSave(autoSave);
+            }
+        }));
+        final int retention = config.getBackupRetention();
+        if (retention == 0) {
+            return backup;
+        }
+        return backup.thenCompose(result -> store.prune(worldName, retention)
+            .handle((pruned, t) -> {
+                if (t != null) {
+                    Logger.error("Failed to delete old backups of " + worldName, t);
+                }
+                return result;
+            }));
+    }
+
+    /**
+     * Returns IDs of the backups of specified world.
+     *
+     * @param worldName name of the world
+     * @return future that completes with the IDs, oldest first
+     */
+    public CompletableFuture<List<String>> list(final String worldName) {
+        return store.list(worldName);
+    }
+
+    /**
+     * Replaces specified world with a backup.
+     * The world is saved and unloaded during the restore, and loaded again afterwards.
+     * Nothing is unloaded if the backup doesn't exist.
+     *
+     * @param worldName name of the world
+     * @param snapshotId ID of the backup
+     * @return future that completes once the world is restored
+     */
+    public CompletableFuture<Void> restore(final String worldName, final String snapshotId) {
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(snapshotId, "snapshotId");
+        return store.exists(worldName, snapshotId).thenCompose(exists -> onMainThread(() -> exists
+            ? unloadAndRestore(worldName, snapshotId)
+            : failed(new IllegalArgumentException("Backup: " + snapshotId + " not found"))));
+    }
+
+    private CompletableFuture<Void> unloadAndRestore(final String worldName, final String snapshotId) {
+        if (busyWorlds.contains(worldName)) {
+            return failed(new IllegalStateException("World: " + worldName + " is being backed up or restored"));
+        }
+        final Path worldDir = getWorldDir(worldName);
+        final World world = Bukkit.getWorld(worldName);
+        final CompletableFuture<Void> flushed;
+        if (world != null) {
+            if (!world.getPlayers().isEmpty()) {
+                return failed(new IllegalStateException("Players are in " + worldName));
+            }
+            // Saved so the current state survives if the restore fails
+            if (!Bukkit.unloadWorld(world, true)) {
+                return failed(new IllegalStateException("Failed to unload " + worldName));
+            }
+            flushed = delay(FLUSH_DELAY_TICKS);
+        } else {
+            flushed = CompletableFuture.completedFuture(null);
+        }
+        busyWorlds.add(worldName);
+        final CompletableFuture<Void> restore =
+            flushed.thenCompose(v -> store.restore(worldName, snapshotId, worldDir));
+        restore.whenComplete((v, t) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            busyWorlds.remove(worldName);
+            // The directory checked at startup may have been replaced
+            worldLoader.invalidate(worldName);
+        }));
+        if (world == null) {
+            return restore;
+        }
+        return restore
+            .handle((v, t) -> t)
+            // Load the world again even if the restore failed, since it was unloaded above
+            .thenCompose(restoreError -> onMainThread(() -> load(worldName)
+                .thenCompose(loaded -> restoreError == null
+                    ? CompletableFuture.<Void>completedFuture(null)
+                    : failed(restoreError))));
+    }
+
+    private CompletableFuture<World> load(final String worldName) {
+        if (worldConfigList.get(worldName).isPresent()) {
+            return worldLoader.load(worldName);
+        }
+        try {
+            return CompletableFuture.completedFuture(WorldCreator.name(worldName).createWorld());
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private Path getWorldDir(final String worldName) {
+        final World world = Bukkit.getWorld(worldName);
+        return world != null
+            ? world.getWorldFolder().toPath()
+            : Bukkit.getWorldContainer().toPath().resolve(worldName);
+    }
+
+    private CompletableFuture<Void> delay(final long ticks) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskLater(plugin, () -> future.complete(null), ticks);
+        return future;
+    }
+
+    private <T> CompletableFuture<T> onMainThread(final Supplier<CompletableFuture<T>> supplier) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTask(plugin, () -> supplier.get().whenComplete((value, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t);
+            } else {
+                future.complete(value);
+            }
+        }));
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable t) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        // Unloading saves chunks, which would modify files being copied
+        if (busyWorlds.contains(event.getWorld().getName())) {
+            event.setCancelled(true);
+        }
+    }
+}
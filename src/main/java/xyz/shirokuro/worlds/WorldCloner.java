@@ -0,0 +1,154 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Copies world directories on background threads.
+ * Files are copied in parallel with {@link Files#copy(Path, Path, java.nio.file.CopyOption...)},
+ * which lets the OS copy the data without passing it through the JVM where supported.
+ */
+public final class WorldCloner {
+
+    /**
+     * Entries that identify a world, lock it or belong to its players, so they must not be shared with the clone
+     */
+    private static final Set<String> SKIPPED_ENTRIES =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList("uid.dat", "session.lock", "playerdata")));
+
+    private final ExecutorService executor;
+    private final Metrics.Timer cloneTimer;
+
+    public WorldCloner(final Metrics metrics) {
+        this.cloneTimer = metrics.timer("world_clone");
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            r -> {
+                final Thread thread = new Thread(r, "Worlds-Cloner-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Copies a world directory.
+     * {@code uid.dat}, {@code session.lock} and {@code playerdata} in {@code source} are not copied,
+     * so the server assigns a new identity to the clone when it is loaded.
+     * If copying fails, {@code target} is deleted.
+     *
+     * @param source directory of the world to copy
+     * @param target directory to create. It must not exist.
+     * @return future that completes with the number of copied bytes
+     */
+    public CompletableFuture<Long> copy(final Path source, final Path target) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(target, "target");
+        final long start = System.nanoTime();
+        try {
+            // Fails if target exists, so an existing directory is never deleted below
+            Files.createDirectory(target);
+        } catch (IOException e) {
+            final CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return CompletableFuture.supplyAsync(() -> createDirectories(source, target), executor)
+            .thenCompose(files -> {
+                final List<CompletableFuture<Long>> copies = files.stream()
+                    .map(file -> CompletableFuture.supplyAsync(() -> copyFile(source, target, file), executor))
+                    .collect(Collectors.toList());
+                return CompletableFuture.allOf(copies.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(v -> copies.stream().mapToLong(CompletableFuture::join).sum());
+            })
+            .whenComplete((bytes, t) -> {
+                if (t == null) {
+                    cloneTimer.recordSince(start);
+                    return;
+                }
+                try {
+                    FileUtils.deleteRecursively(target);
+                } catch (IOException e) {
+                    Logger.warn("Failed to delete partially copied " + target, e);
+                }
+            });
+    }
+
+    /**
+     * Stops the copy threads. Copies in progress are interrupted.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the directory tree of {@code source} under {@code target}.
+     *
+     * @return files to copy, relative to {@code source}
+     */
+    private static List<Path> createDirectories(final Path source, final Path target) {
+        final List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                    throws IOException {
+                    if (isSkipped(source, dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    if (!isSkipped(source, file)) {
+                        files.add(source.relativize(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    private static boolean isSkipped(final Path source, final Path path) {
+        return source.equals(path.getParent()) && SKIPPED_ENTRIES.contains(path.getFileName().toString());
+    }
+
+    private static long copyFile(final Path source, final Path target, final Path file) {
+        final Path dest = target.resolve(file.toString());
+        try {
+            Files.copy(source.resolve(file), dest, StandardCopyOption.COPY_ATTRIBUTES);
+            return Files.size(dest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package xyz.shirokuro.worlds;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
@@ -12,29 +15,46 @@ import lombok.NonNull;
 import org.bukkit.GameMode;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.entity.Player;
 
+/**
+ * Configuration of a world.
+ * Instances are immutable; use {@code withXxx} methods and {@link WorldConfigList#update} to change it.
+ */
 public final class WorldConfig {
 
-    private boolean keepSpawnInMemory;
-    private GameMode gameMode;
-    private Coord spawnCoord;
+    private final boolean keepSpawnInMemory;
+    private final GameMode gameMode;
+    private final Coord spawnCoord;
+    private final LoadMode loadMode;
+    private final long idleUnloadAfter;
+    /**
+     * Game rules overriding {@link DefaultWorldConfig#getGameRules()}
+     */
+    private final Map<String, String> gameRules;
+    private final int time;
 
     private WorldConfig(
         final boolean keepSpawnInMemory,
         @NonNull final GameMode gameMode,
-        final Coord spawnCoord) {
+        final Coord spawnCoord,
+        @NonNull final LoadMode loadMode,
+        final long idleUnloadAfter,
+        @NonNull final Map<String, String> gameRules,
+        final int time) {
         this.keepSpawnInMemory = keepSpawnInMemory;
         this.spawnCoord = spawnCoord;
         this.gameMode = gameMode;
-    }
-
-    public static WorldConfig copy(final WorldConfig source) {
-        return new WorldConfig(source.keepSpawnInMemory, source.gameMode, source.spawnCoord);
+        this.loadMode = loadMode;
+        this.idleUnloadAfter = idleUnloadAfter;
+        this.gameRules = gameRules.isEmpty()
+            ? Collections.emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(gameRules));
+        this.time = time;
     }
 
     public static WorldConfig fromDefault(final DefaultWorldConfig def) {
-        return new WorldConfig(def.keepSpawnInMemory(), def.getGameMode(), null);
+        return new WorldConfig(
+            def.keepSpawnInMemory(), def.getGameMode(), null, LoadMode.EAGER, -1, Collections.emptyMap(), -1);
     }
 
     public static WorldConfig load(@NonNull final ConfigurationSection section)
@@ -57,15 +77,79 @@ public final class WorldConfig {
             throw new ConfigKeyNotPresentException("keep-spawn-in-memory");
         }
         final boolean keepSpawnInMemory = section.getBoolean("keep-spawn-in-memory");
-        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord);
+        // Optional for compatibility with worlds.yml written by older versions
+        final String loadModeStr = section.getString("load-mode", LoadMode.EAGER.name());
+        final LoadMode loadMode;
+        try {
+            loadMode = LoadMode.valueOf(loadModeStr.toUpperCase(Locale.ENGLISH));
+        } catch (final IllegalArgumentException ignored) {
+            throw new ConfigException(loadModeStr + " is invalid load mode");
+        }
+        final long idleUnloadAfter = section.getLong("idle-unload-after", -1);
+        final Map<String, String> gameRules = new HashMap<>();
+        final ConfigurationSection gameRulesSection = section.getConfigurationSection("game-rules");
+        if (gameRulesSection != null) {
+            for (final String key : gameRulesSection.getKeys(false)) {
+                gameRules.put(key, gameRulesSection.getString(key));
+            }
+        }
+        final int time = section.getInt("time", -1);
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
     }
 
     public void fillConfigurationSection(final ConfigurationSection section) {
         section.set("game-mode", gameMode.name());
         section.set("keep-spawn-in-memory", keepSpawnInMemory);
+        section.set("load-mode", loadMode.name().toLowerCase(Locale.ENGLISH));
+        section.set("idle-unload-after", idleUnloadAfter);
+        if (time != -1) {
+            section.set("time", time);
+        }
         if (spawnCoord != null) {
             spawnCoord.fillConfigSection(section.createSection("spawn"));
         }
+        // Omitted when empty; most worlds just inherit the default game rules
+        if (!gameRules.isEmpty()) {
+            final ConfigurationSection gameRulesSection = section.createSection("game-rules");
+            gameRules.forEach(gameRulesSection::set);
+        }
+    }
+
+    /**
+     * Writes this configuration in the binary format read by {@link #readFrom(ByteBuffer)}.
+     * Bump {@code WorldConfigCache.FORMAT_VERSION} when changing the format.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        // Enums are written by name because ordinals may change between Bukkit versions
+        WorldConfigCache.writeString(out, gameMode.name());
+        out.writeBoolean(keepSpawnInMemory);
+        WorldConfigCache.writeString(out, loadMode.name());
+        out.writeLong(idleUnloadAfter);
+        out.writeBoolean(spawnCoord != null);
+        if (spawnCoord != null) {
+            spawnCoord.writeTo(out);
+        }
+        out.writeInt(time);
+        out.writeInt(gameRules.size());
+        for (final Map.Entry<String, String> entry : gameRules.entrySet()) {
+            WorldConfigCache.writeString(out, entry.getKey());
+            WorldConfigCache.writeString(out, entry.getValue());
+        }
+    }
+
+    public static WorldConfig readFrom(@NonNull final ByteBuffer buffer) {
+        final GameMode gameMode = GameMode.valueOf(WorldConfigCache.readString(buffer));
+        final boolean keepSpawnInMemory = buffer.get() != 0;
+        final LoadMode loadMode = LoadMode.valueOf(WorldConfigCache.readString(buffer));
+        final long idleUnloadAfter = buffer.getLong();
+        final Coord spawnCoord = buffer.get() != 0 ? Coord.readFrom(buffer) : null;
+        final int time = buffer.getInt();
+        final int gameRuleCount = buffer.getInt();
+        final Map<String, String> gameRules = new HashMap<>();
+        for (int i = 0; i < gameRuleCount; i++) {
+            gameRules.put(WorldConfigCache.readString(buffer), WorldConfigCache.readString(buffer));
+        }
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
     }
 
     public boolean keepSpawnInMemory() {
@@ -76,6 +160,20 @@ public final class WorldConfig {
         return gameMode;
     }
 
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    /**
+     * Returns seconds to wait before unloading this world after the last player left.
+     * -1 means never unload.
+     *
+     * @return seconds or -1
+     */
+    public long getIdleUnloadAfter() {
+        return idleUnloadAfter;
+    }
+
     /**
      * Returns spawn coordinate of this config.
      * If spawn is not specified, it will returns empty Optional.
@@ -86,29 +184,160 @@ public final class WorldConfig {
         return Optional.ofNullable(spawnCoord);
     }
 
-    public void setSpawn(final Coord spawn) {
-        this.spawnCoord = spawn;
+    /**
+     * Returns game rules of this world. They override the default game rules.
+     *
+     * @return Map (Immutable)
+     */
+    public Map<String, String> getGameRules() {
+        return gameRules;
+    }
+
+    /**
+     * Returns time of this world. -1 means non specify.
+     * The time is set only when it is changed, see {@link #applyTime(World, WorldConfig)}.
+     *
+     * @return time or -1
+     */
+    public int getTime() {
+        return time;
     }
 
-    public void setKeepSpawnInMemory(boolean keepSpawnInMemory) {
-        this.keepSpawnInMemory = keepSpawnInMemory;
+    public WorldConfig withSpawn(final Coord spawn) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawn, loadMode, idleUnloadAfter, gameRules, time);
     }
 
-    public void setGameMode(GameMode gameMode) {
-        this.gameMode = gameMode;
+    public WorldConfig withKeepSpawnInMemory(final boolean keepSpawnInMemory) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
     }
 
-    public void updateGameModeIfNeeded(final Config config, final Player player) {
-        if (config.doUpdateGameModeForAdmin() || !player.hasPermission("worlds.admin")) {
-            player.setGameMode(gameMode);
+    public WorldConfig withGameMode(@NonNull final GameMode gameMode) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
+    }
+
+    public WorldConfig withLoadMode(@NonNull final LoadMode loadMode) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
+    }
+
+    public WorldConfig withIdleUnloadAfter(final long idleUnloadAfter) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
+    }
+
+    public WorldConfig withGameRules(@NonNull final Map<String, String> gameRules) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
+    }
+
+    /**
+     * Returns a copy of this configuration with specified game rule.
+     *
+     * @param key name of the game rule
+     * @param value value, or {@code null} to inherit the default value
+     * @return updated configuration
+     */
+    public WorldConfig withGameRule(@NonNull final String key, final String value) {
+        final Map<String, String> gameRules = new HashMap<>(this.gameRules);
+        if (value == null) {
+            gameRules.remove(key);
+        } else {
+            gameRules.put(key, value);
         }
+        return withGameRules(gameRules);
+    }
+
+    public WorldConfig withTime(final int time) {
+        return new WorldConfig(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
     }
 
     /**
-     * Apply this configuration to specified world.
+     * Apply this configuration except time to specified world.
+     * Game rules of this configuration are layered over the ones of {@code defaults}.
+     * Only values that differ from the current ones are written to the world.
+     *
+     * @param world world to apply to
+     * @param defaults default configuration
      */
-    public void apply(final World world) {
+    public void apply(final World world, final DefaultWorldConfig defaults) {
         Objects.requireNonNull(world, "world");
-        world.setKeepSpawnInMemory(keepSpawnInMemory);
+        Objects.requireNonNull(defaults, "defaults");
+        if (world.getKeepSpawnInMemory() != keepSpawnInMemory) {
+            world.setKeepSpawnInMemory(keepSpawnInMemory);
+        }
+        final Map<String, String> effectiveGameRules = new HashMap<>(defaults.getGameRules());
+        effectiveGameRules.putAll(gameRules);
+        effectiveGameRules.forEach((key, value) -> {
+            try {
+                applyGameRule(world, key, value);
+            } catch (IllegalArgumentException e) {
+                // Don't stop loading the world because of a typo in the configuration
+                Logger.warn(e.getMessage() + " (world: " + world.getName() + ")");
+            }
+        });
+    }
+
+    /**
+     * Sets time of specified world if this configuration changed it.
+     * Time of a world advances every tick, so it is compared with the previous configuration
+     * instead of the world; otherwise every apply would rewind the clock.
+     *
+     * @param world world to apply to
+     * @param previous configuration before the change, or {@code null} if the world was just added
+     */
+    public void applyTime(final World world, final WorldConfig previous) {
+        Objects.requireNonNull(world, "world");
+        if (time != -1 && (previous == null || previous.time != time)) {
+            world.setTime(time);
+        }
+    }
+
+    /**
+     * Sets specified game rule if its current value differs.
+     * Setting a game rule notifies every player in the world, so unchanged values are skipped.
+     *
+     * @return {@code true} if the value was written
+     * @throws IllegalArgumentException if the game rule is invalid
+     */
+    static boolean applyGameRule(final World world, final String key, final String value) {
+        if (!world.isGameRule(key)) {
+            throw new IllegalArgumentException("Gamerule: " + key + " is invalid gamerule!");
+        }
+        if (value.equals(world.getGameRuleValue(key))) {
+            return false;
+        }
+        world.setGameRuleValue(key, value);
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WorldConfig)) {
+            return false;
+        }
+        final WorldConfig other = (WorldConfig) obj;
+        return keepSpawnInMemory == other.keepSpawnInMemory &&
+            gameMode == other.gameMode &&
+            Objects.equals(spawnCoord, other.spawnCoord) &&
+            loadMode == other.loadMode &&
+            idleUnloadAfter == other.idleUnloadAfter &&
+            gameRules.equals(other.gameRules) &&
+            time == other.time;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keepSpawnInMemory, gameMode, spawnCoord, loadMode, idleUnloadAfter, gameRules, time);
+    }
+
+    public enum LoadMode {
+        /**
+         * Loaded on startup
+         */
+        EAGER,
+        /**
+         * Loaded when someone teleports to the world
+         */
+        LAZY
     }
 }
@@ -0,0 +1,184 @@
+package xyz.shirokuro.worlds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Binary copy of the parsed worlds.yml.
+ * Reading this is much faster than parsing YAML, and the cache is ignored
+ * once worlds.yml is changed (e.g. edited by hand).
+ */
+public final class WorldConfigCache {
+
+    private static final int MAGIC = 0x57434348; // "WCCH"
+    private static final int FORMAT_VERSION = 4;
+
+    private final Path filePath;
+
+    public WorldConfigCache(final Path filePath) {
+        this.filePath = Objects.requireNonNull(filePath, "filePath");
+    }
+
+    /**
+     * Reads cached worlds if the cache was built from specified worlds.yml.
+     *
+     * @param key key of current worlds.yml
+     * @return map of world name to {@code WorldConfig}, or {@code null} if the cache is missing or stale
+     */
+    public Map<String, WorldConfig> read(final Key key) {
+        Objects.requireNonNull(key, "key");
+        if (Files.notExists(filePath)) {
+            return null;
+        }
+        try {
+            // Read into the heap rather than mapping, since a mapping keeps the file open on Windows
+            // until it is garbage collected, which makes replacing the cache fail
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(filePath));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !key.equals(Key.readFrom(buffer))) {
+                return null;
+            }
+            final int count = buffer.getInt();
+            final Map<String, WorldConfig> map = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                final String worldName = readString(buffer);
+                map.put(worldName, WorldConfig.readFrom(buffer));
+            }
+            return map;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Logger.warn("Ignoring broken cache: " + filePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Serializes specified worlds.
+     * Returned bytes should be written to {@link #getFilePath()} by the writer thread.
+     *
+     * @param key key of worlds.yml which {@code map} was loaded from
+     * @param map map of world name to {@code WorldConfig}
+     * @return serialized cache
+     */
+    public static byte[] serialize(final Key key, final Map<String, WorldConfig> map) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(map, "map");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            key.writeTo(out);
+            out.writeInt(map.size());
+            for (final Map.Entry<String, WorldConfig> entry : map.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    static void writeString(final DataOutput out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Identifies content of worlds.yml by its size, modification time and CRC32 of the content.
+     * The checksum detects edits that keep the size within the granularity of modification times,
+     * e.g. {@code x: 100} to {@code x: 200}, or by editors that keep the modification time.
+     */
+    public static final class Key {
+        /**
+         * Number of bytes written by {@link #writeTo(DataOutput)}
+         */
+        static final int BYTES = Long.BYTES * 3;
+        /**
+         * Key of a file that doesn't exist
+         */
+        public static final Key ABSENT = new Key(-1, -1, -1);
+
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+
+        private Key(final long size, final long lastModified, final long checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Creates key of specified file.
+         *
+         * @param filePath path to the file
+         * @param content content of the file, which was read or written by the caller
+         * @return key
+         * @throws IOException if failed to get attributes of the file
+         */
+        public static Key of(final Path filePath, final byte[] content) throws IOException {
+            final BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+            final CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length);
+            return new Key(attrs.size(), attrs.lastModifiedTime().toMillis(), crc.getValue());
+        }
+
+        /**
+         * Compares size and modification time written by older versions, which have no checksum.
+         */
+        boolean matchesUnchecked(final ByteBuffer buffer) {
+            return size == buffer.getLong() && lastModified == buffer.getLong();
+        }
+
+        static Key readFrom(final ByteBuffer buffer) {
+            return new Key(buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
+
+        void writeTo(final DataOutput out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeLong(checksum);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return size == other.size && lastModified == other.lastModified && checksum == other.checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified, checksum);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package xyz.shirokuro.worlds;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Append-only log of changes made to worlds.yml.
+ * Each entry holds the whole configuration of one world (or its removal),
+ * so appending costs the same regardless of how many worlds are registered.
+ * Entries are folded back into worlds.yml by {@link WorldConfigList#save()}.
+ * The header records which worlds.yml the entries are based on, so they are discarded
+ * if worlds.yml is edited by others.
+ */
+public final class WorldConfigJournal {
+
+    /**
+     * Journals written by older versions have no base
+     */
+    private static final int LEGACY_MAGIC = 0x574A524E; // "WJRN"
+    /**
+     * Journals written by older versions have a base without checksum
+     */
+    private static final int UNCHECKED_MAGIC = 0x574A5232; // "WJR2"
+    private static final int MAGIC = 0x574A5233; // "WJR3"
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final Path filePath;
+    private long lastSequence;
+    private int entryCount;
+    /**
+     * Key of worlds.yml which new entries are based on
+     */
+    private WorldConfigCache.Key base = WorldConfigCache.Key.ABSENT;
+
+    public WorldConfigJournal(final Path filePath) {
+        this.filePath = Objects.requireNonNull(filePath, "filePath");
+    }
+
+    /**
+     * Applies journaled changes to specified map.
+     * A truncated entry at the end of the journal (e.g. by a crash) is ignored.
+     * If the journal is based on another worlds.yml, that is, worlds.yml was edited by others,
+     * the entries are stale and the journal is truncated instead.
+     *
+     * @param map map of world name to {@code WorldConfig} loaded from worlds.yml
+     * @param base key of the worlds.yml which {@code map} was loaded from
+     * @throws IOException if failed to read the journal
+     * @throws ConfigException if a journaled configuration is invalid
+     */
+    public synchronized void replay(
+        final Map<String, WorldConfig> map,
+        final WorldConfigCache.Key base) throws IOException, ConfigException {
+        Objects.requireNonNull(map, "map");
+        this.base = Objects.requireNonNull(base, "base");
+        entryCount = 0;
+        if (Files.notExists(filePath) || Files.size(filePath) == 0) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(filePath)))) {
+            final int magic = in.readInt();
+            if (magic == MAGIC || magic == UNCHECKED_MAGIC) {
+                final boolean checked = magic == MAGIC;
+                final byte[] header = new byte[checked ? WorldConfigCache.Key.BYTES : Long.BYTES * 2];
+                in.readFully(header);
+                final ByteBuffer buffer = ByteBuffer.wrap(header);
+                final boolean matches = checked
+                    ? base.equals(WorldConfigCache.Key.readFrom(buffer))
+                    : base.matchesUnchecked(buffer);
+                if (!matches) {
+                    Logger.warn("Discarding " + filePath + " because worlds.yml was modified by others");
+                    truncate(base);
+                    return;
+                }
+            } else if (magic != LEGACY_MAGIC) {
+                throw new IOException("File: " + filePath + " is not a journal");
+            }
+            long previousSequence = 0;
+            while (true) {
+                final long sequence;
+                try {
+                    sequence = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                final byte op;
+                final String worldName;
+                final WorldConfig worldConfig;
+                try {
+                    op = in.readByte();
+                    worldName = in.readUTF();
+                    worldConfig = op == OP_PUT ? readWorldConfig(in) : null;
+                } catch (EOFException e) {
+                    Logger.warn("Ignoring truncated journal entry #" + sequence + " in " + filePath);
+                    break;
+                }
+                if (sequence <= previousSequence) {
+                    Logger.warn("Ignoring out of order journal entry #" + sequence + " in " + filePath);
+                    continue;
+                }
+                previousSequence = sequence;
+                entryCount++;
+                switch (op) {
+                    case OP_PUT:
+                        map.put(worldName, worldConfig);
+                        break;
+                    case OP_REMOVE:
+                        map.remove(worldName);
+                        break;
+                    default:
+                        throw new IOException("Unknown journal operation: " + op);
+                }
+            }
+            // Keep sequence numbers increasing even if entries were appended while replaying
+            lastSequence = Math.max(lastSequence, previousSequence);
+        }
+    }
+
+    private static WorldConfig readWorldConfig(final DataInputStream in) throws IOException, ConfigException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        final YamlConfiguration section = new YamlConfiguration();
+        try {
+            section.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            throw new ConfigException("Invalid journal entry", e);
+        }
+        return WorldConfig.load(section);
+    }
+
+    /**
+     * Returns the next sequence number.
+     *
+     * @return sequence number for a new entry
+     */
+    public synchronized long nextSequence() {
+        return ++lastSequence;
+    }
+
+    /**
+     * Returns how many entries are written since the last truncation.
+     *
+     * @return number of entries
+     */
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Appends a change of the world.
+     *
+     * @param sequence sequence number obtained by {@link #nextSequence()}
+     * @param worldName name of the world
+     * @param worldConfigYaml serialized configuration of the world, or {@code null} if it was removed
+     * @throws IOException if failed to write
+     */
+    public synchronized void append(
+        final long sequence,
+        final String worldName,
+        final String worldConfigYaml) throws IOException {
+
+        Objects.requireNonNull(worldName, "worldName");
+        try (FileChannel channel = FileChannel.open(filePath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            if (channel.size() == 0) {
+                out.writeInt(MAGIC);
+                base.writeTo(out);
+            }
+            out.writeLong(sequence);
+            if (worldConfigYaml == null) {
+                out.writeByte(OP_REMOVE);
+                out.writeUTF(worldName);
+            } else {
+                out.writeByte(OP_PUT);
+                out.writeUTF(worldName);
+                final byte[] bytes = worldConfigYaml.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            channel.force(false);
+        }
+        entryCount++;
+    }
+
+    /**
+     * Removes all entries.
+     * Call this only after every entry is written to worlds.yml.
+     *
+     * @param base key of the worlds.yml which new entries are based on
+     * @throws IOException if failed to truncate
+     */
+    public synchronized void truncate(final WorldConfigCache.Key base) throws IOException {
+        this.base = Objects.requireNonNull(base, "base");
+        if (Files.exists(filePath)) {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        }
+        entryCount = 0;
+    }
+}
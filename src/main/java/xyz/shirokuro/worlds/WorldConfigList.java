@@ -2,57 +2,253 @@ package xyz.shirokuro.worlds;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
-import java.util.concurrent.ConcurrentMap;
 
+/**
+ * List of worlds managed by Worlds.
+ * The list is published as an immutable, versioned snapshot that is replaced by a single atomic swap,
+ * so readers never take locks and always see a consistent point-in-time view.
+ */
 public final class WorldConfigList {
 
+    /**
+     * Fold the journal into worlds.yml when it has this many entries
+     */
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
     private final Path filePath;
-    private ConcurrentMap<String, WorldConfig> map = new ConcurrentHashMap<>();
+    private final FileWriteQueue writeQueue;
+    private final WorldConfigJournal journal;
+    private final WorldConfigCache cache;
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final WorldNameIndex nameIndex = new WorldNameIndex();
+    private final Metrics.Timer saveTimer;
+    private final Metrics.Timer journalTimer;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private volatile boolean cacheWritesEnabled = true;
 
-    public WorldConfigList(final Path filePath) throws IOException, ConfigException {
+    public WorldConfigList(final Path filePath, final FileWriteQueue writeQueue, final Metrics metrics)
+        throws IOException, ConfigException {
         this.filePath = Objects.requireNonNull(filePath);
+        this.writeQueue = Objects.requireNonNull(writeQueue, "writeQueue");
+        this.journal = new WorldConfigJournal(filePath.resolveSibling("worlds.journal"));
+        this.cache = new WorldConfigCache(filePath.resolveSibling("worlds.cache"));
+        this.saveTimer = metrics.timer("save");
+        this.journalTimer = metrics.timer("journal_append");
         reload();
     }
 
-    public void reload() throws IOException, ConfigException {
-        if (Files.notExists(filePath)) {
-            return;
+    /**
+     * Stops writing the binary cache after worlds.yml is parsed.
+     * Benchmarks use this to measure parsing alone.
+     */
+    void disableCacheWrites() {
+        cacheWritesEnabled = false;
+    }
+
+    public Changes reload() throws IOException, ConfigException {
+        return replace(read());
+    }
+
+    /**
+     * Parses worlds.yml and the journal without applying them to this instance.
+     *
+     * @return map of world name to {@code WorldConfig}
+     * @throws IOException if failed to read files
+     * @throws ConfigException if configuration is invalid
+     */
+    public Map<String, WorldConfig> read() throws IOException, ConfigException {
+        final Map<String, WorldConfig> map = new HashMap<>();
+        // Holds the journal lock, so save() can't replace worlds.yml and truncate the journal in between
+        synchronized (journal) {
+            final WorldConfigCache.Key key;
+            if (Files.exists(filePath)) {
+                if (!Files.isRegularFile(filePath)) {
+                    throw new IOException("Path: " + filePath + " is not a regular file!");
+                }
+                // Checksumming is much cheaper than parsing, and the content is parsed only on a cache miss
+                final byte[] content = Files.readAllBytes(filePath);
+                key = WorldConfigCache.Key.of(filePath, content);
+                map.putAll(loadSnapshot(key, content));
+            } else {
+                key = WorldConfigCache.Key.ABSENT;
+            }
+            journal.replay(map, key);
+        }
+        return map;
+    }
+
+    /**
+     * Replaces all worlds with specified ones.
+     *
+     * @param map map returned by {@link #read()}
+     * @return which worlds were changed
+     */
+    public Changes replace(final Map<String, WorldConfig> map) {
+        Objects.requireNonNull(map, "map");
+        final Map<String, WorldConfig> copy = Collections.unmodifiableMap(new HashMap<>(map));
+        final Snapshot previous = snapshot.getAndUpdate(current -> current.next(copy));
+        final Changes changes = Changes.between(previous.map, copy);
+        if (!changes.isEmpty()) {
+            nameIndex.replaceAll(copy.keySet());
+            notifyListeners(changes.getAll());
+        }
+        return changes;
+    }
+
+    /**
+     * Registers a listener that is called after worlds are added, removed or replaced.
+     * Listeners receive names of the changed worlds, so they can update only those,
+     * and are called on the thread that made the change.
+     *
+     * @param listener listener to register
+     */
+    public void addListener(final Consumer<Set<String>> listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    private void notifyListeners(final Set<String> worldNames) {
+        listeners.forEach(listener -> listener.accept(worldNames));
+    }
+
+    /**
+     * Loads worlds.yml, from the binary cache if it's up to date.
+     */
+    private Map<String, WorldConfig> loadSnapshot(final WorldConfigCache.Key key, final byte[] content)
+        throws ConfigException {
+        final Map<String, WorldConfig> cached = cache.read(key);
+        if (cached != null) {
+            return cached;
         }
-        if (!Files.isRegularFile(filePath)) {
-            throw new IOException("Path: " + filePath + " is not a regular file!");
+        final YamlConfiguration rootConfig = new YamlConfiguration();
+        try {
+            rootConfig.loadFromString(new String(content, StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            throw new ConfigException("Failed to parse " + filePath, e);
         }
-        final ConcurrentMap<String, WorldConfig> map = new ConcurrentHashMap<>();
-        final YamlConfiguration rootConfig = YamlConfiguration.loadConfiguration(filePath.toFile());
+        final Map<String, WorldConfig> map = new HashMap<>();
         for (final String worldName : rootConfig.getKeys(false)) {
             final ConfigurationSection  worldConfSection = rootConfig.getConfigurationSection(worldName);
             final WorldConfig worldConfig = WorldConfig.load(worldConfSection);
             map.put(worldName, worldConfig);
         }
-        this.map = map;
+        if (!cacheWritesEnabled) {
+            return map;
+        }
+        final byte[] serialized = WorldConfigCache.serialize(key, map);
+        writeQueue.execute(() -> {
+            try {
+                writeQueue.writeNow(cache.getFilePath(), serialized);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).exceptionally(t -> {
+            Logger.warn("Failed to write the cache of " + filePath, t);
+            return null;
+        });
+        return map;
     }
 
+    /**
+     * Writes current configuration of specified world to the journal.
+     * If the world was removed, its removal is written.
+     * This is much cheaper than {@link #save()} because only the world is written.
+     * This can be called from any thread. The configuration is read on the writer thread,
+     * so entries are appended in sequence order and the last entry holds the latest configuration.
+     *
+     * @param worldName name of the world
+     * @return future that completes when the change is written
+     */
+    public CompletableFuture<Void> saveWorld(final String worldName) {
+        Objects.requireNonNull(worldName, "worldName");
+        final CompletableFuture<Void> future = writeQueue.execute(() -> {
+            final WorldConfig worldConfig = snapshot.get().map.get(worldName);
+            final String worldConfigYaml;
+            if (worldConfig != null) {
+                final YamlConfiguration section = new YamlConfiguration();
+                worldConfig.fillConfigurationSection(section);
+                worldConfigYaml = section.saveToString();
+            } else {
+                worldConfigYaml = null;
+            }
+            try {
+                final long start = System.nanoTime();
+                journal.append(journal.nextSequence(), worldName, worldConfigYaml);
+                journalTimer.recordSince(start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (journal.getEntryCount() >= COMPACTION_THRESHOLD) {
+            save();
+        }
+        return future;
+    }
+
+    /**
+     * Folds the journal into worlds.yml if it has any entries.
+     */
+    public void compact() {
+        if (journal.getEntryCount() > 0) {
+            save();
+        }
+    }
+
+    /**
+     * Writes all worlds to worlds.yml and clears the journal.
+     *
+     * @return future that completes when worlds.yml is written
+     */
     public CompletableFuture<Void> save() {
-        return CompletableFuture.runAsync(() -> {
+        if (!compacting.compareAndSet(false, true)) {
+            // Pending compaction will include all changes made until it starts
+            return writeQueue.execute(() -> {});
+        }
+        return writeQueue.execute(() -> {
+            compacting.set(false);
+            final long start = System.nanoTime();
+            final Map<String, WorldConfig> map = snapshot.get().map;
             final YamlConfiguration config = new YamlConfiguration();
             map.forEach((worldName, worldConfig) -> {
                 final ConfigurationSection worldConfigSection = config.createSection(worldName);
                 worldConfig.fillConfigurationSection(worldConfigSection);
             });
+            final byte[] content = config.saveToString().getBytes(StandardCharsets.UTF_8);
             try {
-                config.save(filePath.toFile());
+                final WorldConfigCache.Key key;
+                // Readers must see either the old worlds.yml with the journal or the new one without it
+                synchronized (journal) {
+                    writeQueue.writeNow(filePath, content);
+                    key = WorldConfigCache.Key.of(filePath, content);
+                    journal.truncate(key);
+                }
+                writeQueue.writeNow(cache.getFilePath(), WorldConfigCache.serialize(key, map));
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
+            saveTimer.recordSince(start);
         });
     }
 
@@ -64,7 +260,7 @@ public final class WorldConfigList {
      * @return maybe empty
      */
     public Optional<WorldConfig> get(final String worldName) {
-        return Optional.ofNullable(map.get(worldName));
+        return Optional.ofNullable(snapshot.get().map.get(worldName));
     }
 
     /**
@@ -79,18 +275,207 @@ public final class WorldConfigList {
     }
 
     public void add(final String worldName, final WorldConfig worldConfig) {
-        map.put(worldName, worldConfig);
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(worldConfig, "worldConfig");
+        snapshot.updateAndGet(current -> {
+            final Map<String, WorldConfig> map = new HashMap<>(current.map);
+            map.put(worldName, worldConfig);
+            return current.next(Collections.unmodifiableMap(map));
+        });
+        nameIndex.add(worldName);
+        notifyListeners(Collections.singleton(worldName));
     }
 
     public void add(final World world, final WorldConfig worldConfig) {
         add(world.getName(), worldConfig);
     }
 
+    /**
+     * Replaces configuration of specified world with the result of {@code updater}.
+     *
+     * @param worldName name of the world
+     * @param updater function that returns new configuration from current one.
+     *                It may be called multiple times if the list is changed concurrently.
+     * @return updated configuration, or empty if specified world is not managed
+     */
+    public Optional<WorldConfig> update(final String worldName, final UnaryOperator<WorldConfig> updater) {
+        Objects.requireNonNull(worldName, "worldName");
+        Objects.requireNonNull(updater, "updater");
+        final Snapshot updated = snapshot.updateAndGet(current -> {
+            final WorldConfig worldConfig = current.map.get(worldName);
+            if (worldConfig == null) {
+                return current;
+            }
+            final Map<String, WorldConfig> map = new HashMap<>(current.map);
+            map.put(worldName, Objects.requireNonNull(updater.apply(worldConfig)));
+            return current.next(Collections.unmodifiableMap(map));
+        });
+        final WorldConfig worldConfig = updated.map.get(worldName);
+        if (worldConfig != null) {
+            notifyListeners(Collections.singleton(worldName));
+        }
+        return Optional.ofNullable(worldConfig);
+    }
+
+    /**
+     * Replaces configurations of specified worlds with the results of {@code updater} at once.
+     * Listeners are notified once. Worlds that are not managed are ignored.
+     *
+     * @param worldNames names of the worlds
+     * @param updater function that returns new configuration from current one.
+     *                It may be called multiple times if the list is changed concurrently.
+     * @return world name to updated configuration
+     */
+    public Map<String, WorldConfig> updateAll(
+        final Collection<String> worldNames,
+        final UnaryOperator<WorldConfig> updater) {
+        Objects.requireNonNull(worldNames, "worldNames");
+        Objects.requireNonNull(updater, "updater");
+        final Snapshot updated = snapshot.updateAndGet(current -> {
+            final Map<String, WorldConfig> map = new HashMap<>(current.map);
+            boolean changed = false;
+            for (final String worldName : worldNames) {
+                final WorldConfig worldConfig = current.map.get(worldName);
+                if (worldConfig != null) {
+                    map.put(worldName, Objects.requireNonNull(updater.apply(worldConfig)));
+                    changed = true;
+                }
+            }
+            return changed ? current.next(Collections.unmodifiableMap(map)) : current;
+        });
+        final Map<String, WorldConfig> result = new HashMap<>();
+        for (final String worldName : worldNames) {
+            final WorldConfig worldConfig = updated.map.get(worldName);
+            if (worldConfig != null) {
+                result.put(worldName, worldConfig);
+            }
+        }
+        if (!result.isEmpty()) {
+            notifyListeners(Collections.unmodifiableSet(result.keySet()));
+        }
+        return result;
+    }
+
     public void remove(final String worldName) {
-        map.remove(worldName);
+        Objects.requireNonNull(worldName, "worldName");
+        final Snapshot previous = snapshot.getAndUpdate(current -> {
+            if (!current.map.containsKey(worldName)) {
+                return current;
+            }
+            final Map<String, WorldConfig> map = new HashMap<>(current.map);
+            map.remove(worldName);
+            return current.next(Collections.unmodifiableMap(map));
+        });
+        if (previous.map.containsKey(worldName)) {
+            nameIndex.remove(worldName);
+            notifyListeners(Collections.singleton(worldName));
+        }
     }
 
-    public ConcurrentMap<String, WorldConfig> getMap() {
-        return map;
+    /**
+     * Returns current worlds.
+     * Returned map is an immutable snapshot and is not affected by later changes.
+     *
+     * @return map of world name to {@code WorldConfig}
+     */
+    public Map<String, WorldConfig> getMap() {
+        return snapshot.get().map;
+    }
+
+    /**
+     * Returns names of the managed worlds that start with specified prefix.
+     * This is used for tab completion, so the result is sorted and capped at {@link WorldNameIndex#MAX_RESULTS}.
+     *
+     * @param prefix prefix of the names
+     * @return names of the worlds
+     */
+    public List<String> getWorldNamesStartingWith(final String prefix) {
+        return nameIndex.search(prefix);
+    }
+
+    /**
+     * Returns version of current snapshot, which is incremented on every change.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(0, Collections.emptyMap());
+
+        private final long version;
+        private final Map<String, WorldConfig> map;
+
+        private Snapshot(final long version, final Map<String, WorldConfig> map) {
+            this.version = version;
+            this.map = map;
+        }
+
+        private Snapshot next(final Map<String, WorldConfig> map) {
+            return new Snapshot(version + 1, map);
+        }
+    }
+
+    /**
+     * Names of the worlds changed between two versions of the list.
+     */
+    public static final class Changes {
+        private final Set<String> added;
+        private final Set<String> removed;
+        private final Set<String> modified;
+
+        private Changes(final Set<String> added, final Set<String> removed, final Set<String> modified) {
+            this.added = Collections.unmodifiableSet(added);
+            this.removed = Collections.unmodifiableSet(removed);
+            this.modified = Collections.unmodifiableSet(modified);
+        }
+
+        public static Changes between(
+            final Map<String, WorldConfig> previous,
+            final Map<String, WorldConfig> current) {
+            final Set<String> added = new HashSet<>();
+            final Set<String> modified = new HashSet<>();
+            current.forEach((worldName, worldConfig) -> {
+                final WorldConfig previousConfig = previous.get(worldName);
+                if (previousConfig == null) {
+                    added.add(worldName);
+                } else if (!previousConfig.equals(worldConfig)) {
+                    modified.add(worldName);
+                }
+            });
+            final Set<String> removed = new HashSet<>(previous.keySet());
+            removed.removeAll(current.keySet());
+            return new Changes(added, removed, modified);
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+        }
+
+        public Set<String> getAdded() {
+            return added;
+        }
+
+        public Set<String> getRemoved() {
+            return removed;
+        }
+
+        public Set<String> getModified() {
+            return modified;
+        }
+
+        /**
+         * Returns names of the added, removed and modified worlds.
+         *
+         * @return names of the changed worlds
+         */
+        public Set<String> getAll() {
+            final Set<String> all = new HashSet<>(added);
+            all.addAll(removed);
+            all.addAll(modified);
+            return Collections.unmodifiableSet(all);
+        }
     }
 }
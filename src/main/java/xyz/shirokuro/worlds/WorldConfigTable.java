@@ -0,0 +1,102 @@
+package xyz.shirokuro.worlds;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * {@code WorldConfig}s of the loaded worlds, indexed by {@code World} instance.
+ * Lookups don't hash the world name and don't allocate, so this is suitable for hot event paths.
+ * The table is swapped when worlds are loaded/unloaded or {@code WorldConfigList} is changed.
+ * Changes of {@code WorldConfigList} look up only the changed worlds instead of rebuilding the whole table.
+ * All methods except {@link #get(World)} must be called from the main thread.
+ */
+public final class WorldConfigTable implements Listener {
+
+    private final WorldConfigList worldConfigList;
+    private volatile Map<World, WorldConfig> table = new IdentityHashMap<>();
+
+    public WorldConfigTable(final WorldConfigList worldConfigList) {
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+    }
+
+    /**
+     * Returns {@code WorldConfig} of specified world.
+     *
+     * @param world loaded world
+     * @return {@code WorldConfig} or {@code null} if the world is not managed
+     */
+    public WorldConfig get(final World world) {
+        return table.get(world);
+    }
+
+    /**
+     * Rebuilds whole table from loaded worlds.
+     */
+    public void refresh() {
+        final Map<World, WorldConfig> table = new IdentityHashMap<>();
+        for (final World world : Bukkit.getWorlds()) {
+            worldConfigList.get(world).ifPresent(worldConfig -> table.put(world, worldConfig));
+        }
+        this.table = table;
+    }
+
+    /**
+     * Updates entries of specified worlds.
+     * This is registered as a listener of {@code WorldConfigList}.
+     *
+     * @param worldNames names of the changed worlds
+     */
+    public void update(final Set<String> worldNames) {
+        Map<World, WorldConfig> table = null;
+        for (final String worldName : worldNames) {
+            final World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                continue;
+            }
+            if (table == null) {
+                table = new IdentityHashMap<>(this.table);
+            }
+            final WorldConfig worldConfig = worldConfigList.get(world).orElse(null);
+            if (worldConfig == null) {
+                table.remove(world);
+            } else {
+                table.put(world, worldConfig);
+            }
+        }
+        if (table != null) {
+            this.table = table;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onWorldLoad(final WorldLoadEvent event) {
+        final World world = event.getWorld();
+        final WorldConfig worldConfig = worldConfigList.get(world).orElse(null);
+        if (worldConfig == null) {
+            return;
+        }
+        final Map<World, WorldConfig> table = new IdentityHashMap<>(this.table);
+        table.put(world, worldConfig);
+        this.table = table;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        final World world = event.getWorld();
+        if (!table.containsKey(world)) {
+            return;
+        }
+        final Map<World, WorldConfig> table = new IdentityHashMap<>(this.table);
+        table.remove(world);
+        this.table = table;
+    }
+}
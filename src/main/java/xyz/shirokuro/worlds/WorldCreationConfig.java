@@ -5,12 +5,16 @@ import org.bukkit.WorldCreator;
 import org.bukkit.WorldType;
 import org.bukkit.configuration.ConfigurationSection;
 import java.util.Locale;
+import java.util.Objects;
 
+/**
+ * Settings used to create new worlds. Instances are immutable.
+ */
 public final class WorldCreationConfig {
-    private String generatorName;
-    private String generatorSettings;
-    private World.Environment environment;
-    private WorldType worldType;
+    private final String generatorName;
+    private final String generatorSettings;
+    private final World.Environment environment;
+    private final WorldType worldType;
 
     public WorldCreationConfig(
             final String generatorName,
@@ -72,33 +76,51 @@ public final class WorldCreationConfig {
         return generatorName;
     }
 
-    public void setGeneratorName(final String generatorName) {
-        this.generatorName = generatorName;
+    public WorldCreationConfig withGeneratorName(final String generatorName) {
+        return new WorldCreationConfig(generatorName, generatorSettings, environment, worldType);
     }
 
     public String getGeneratorSettings() {
         return generatorSettings;
     }
 
-    public void setGeneratorSettings(final String generatorSettings) {
-        this.generatorSettings = generatorSettings;
+    public WorldCreationConfig withGeneratorSettings(final String generatorSettings) {
+        return new WorldCreationConfig(generatorName, generatorSettings, environment, worldType);
     }
 
     public World.Environment getEnvironment() {
         return environment;
     }
 
-    public void setEnvironment(final World.Environment environment) {
-        this.environment = environment;
+    public WorldCreationConfig withEnvironment(final World.Environment environment) {
+        return new WorldCreationConfig(generatorName, generatorSettings, environment, worldType);
     }
 
     public WorldType getWorldType() {
         return worldType;
     }
 
-    public void setWorldType(final WorldType worldType) {
-        this.worldType = worldType;
+    public WorldCreationConfig withWorldType(final WorldType worldType) {
+        return new WorldCreationConfig(generatorName, generatorSettings, environment, worldType);
     }
-}
 
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WorldCreationConfig)) {
+            return false;
+        }
+        final WorldCreationConfig other = (WorldCreationConfig) obj;
+        return Objects.equals(generatorName, other.generatorName) &&
+            Objects.equals(generatorSettings, other.generatorSettings) &&
+            environment == other.environment &&
+            worldType == other.worldType;
+    }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(generatorName, generatorSettings, environment, worldType);
+    }
+}
@@ -0,0 +1,215 @@
+package xyz.shirokuro.worlds;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldInitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Creates worlds one at a time without freezing the server.
+ * Bukkit generates the whole spawn area inside {@code createWorld()}, so it is skipped by
+ * disabling keep-spawn-in-memory on {@code WorldInitEvent}, and the spawn chunks are generated
+ * across ticks afterwards within the batch budget.
+ * All methods must be called from the main thread.
+ */
+public final class WorldCreationQueue implements Listener {
+
+    /**
+     * Radius in chunks of the spawn area that vanilla keeps loaded
+     */
+    private static final int SPAWN_RADIUS_CHUNKS = 12;
+    private static final int PROGRESS_STEPS = 4;
+
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private final Plugin plugin;
+    private final Config config;
+    private Request current;
+    private BukkitTask task;
+
+    public WorldCreationQueue(final Plugin plugin, final Config config) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+    }
+
+    /**
+     * Enqueues creation of a world.
+     * {@code requester} is notified of the position in the queue and the progress while it is online.
+     *
+     * @param creator creator of the world
+     * @param requester sender who requested the creation
+     * @return future that completes on the main thread with the created world
+     * @throws IllegalStateException if a world with the same name is already queued
+     */
+    public CompletableFuture<World> enqueue(final WorldCreator creator, final CommandSender requester) {
+        Objects.requireNonNull(creator, "creator");
+        Objects.requireNonNull(requester, "requester");
+        if (contains(creator.name())) {
+            throw new IllegalStateException(creator.name() + " is already queued");
+        }
+        final Request request = new Request(creator, requester);
+        queue.addLast(request);
+        if (current != null || queue.size() > 1) {
+            requester.sendMessage(ChatColor.GRAY + "Queued " + creator.name() +
+                " (position: " + getPosition(creator.name()) + ")");
+        }
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+        return request.future;
+    }
+
+    public boolean contains(final String worldName) {
+        return getPosition(worldName) >= 0;
+    }
+
+    /**
+     * Returns position of specified world in the queue.
+     *
+     * @param worldName name of the world
+     * @return 0 if the world is being created, 1 or greater if it's waiting, or -1 if it's not queued
+     */
+    public int getPosition(final String worldName) {
+        if (current != null && current.creator.name().equals(worldName)) {
+            return 0;
+        }
+        int position = 1;
+        for (final Request request : queue) {
+            if (request.creator.name().equals(worldName)) {
+                return position;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns descriptions of the worlds in the queue, starting with the one being created.
+     *
+     * @return descriptions
+     */
+    public List<String> describe() {
+        final List<String> result = new ArrayList<>();
+        if (current != null) {
+            result.add(current.creator.name() + " (creating, " + current.getProgressPercent() + "%, requested by " +
+                current.requester.getName() + ")");
+        }
+        for (final Request request : queue) {
+            result.add(request.creator.name() + " (waiting, requested by " + request.requester.getName() + ")");
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void tick() {
+        if (current == null) {
+            current = queue.pollFirst();
+            if (current == null) {
+                task.cancel();
+                task = null;
+                return;
+            }
+            // Creating the world itself can't be split, so it gets a tick of its own
+            create(current);
+            return;
+        }
+        final long deadline = System.nanoTime() +
+            TimeUnit.MILLISECONDS.toNanos(config.getBatchBudgetMillis());
+        do {
+            current.loadNextChunk();
+        } while (!current.isPreloaded() && System.nanoTime() < deadline);
+        current.reportProgress();
+        if (current.isPreloaded()) {
+            final Request finished = current;
+            current = null;
+            finished.world.setKeepSpawnInMemory(config.getDefaultWorldConfig().keepSpawnInMemory());
+            finished.future.complete(finished.world);
+        }
+    }
+
+    private void create(final Request request) {
+        final String worldName = request.creator.name();
+        CommandSenders.sendIfOnline(request.requester, ChatColor.GRAY + "Creating " + worldName + "...");
+        try {
+            request.world = request.creator.createWorld();
+        } catch (RuntimeException e) {
+            Logger.error("Failed to create world: " + worldName, e);
+            current = null;
+            request.future.completeExceptionally(e);
+            return;
+        }
+        if (request.world == null) {
+            current = null;
+            request.future.completeExceptionally(new IllegalStateException("Failed to create " + worldName));
+            return;
+        }
+        final Location spawn = request.world.getSpawnLocation();
+        request.spawnChunkX = spawn.getBlockX() >> 4;
+        request.spawnChunkZ = spawn.getBlockZ() >> 4;
+    }
+
+    @EventHandler
+    public void onWorldInit(final WorldInitEvent event) {
+        final World world = event.getWorld();
+        if (current != null && current.world == null && world.getName().equals(current.creator.name())) {
+            // Spawn chunks are loaded across ticks instead
+            world.setKeepSpawnInMemory(false);
+        }
+    }
+
+    private static final class Request {
+        private static final int DIAMETER = SPAWN_RADIUS_CHUNKS * 2 + 1;
+        private static final int TOTAL_CHUNKS = DIAMETER * DIAMETER;
+
+        private final CompletableFuture<World> future = new CompletableFuture<>();
+        private final WorldCreator creator;
+        private final CommandSender requester;
+        private World world;
+        private int spawnChunkX;
+        private int spawnChunkZ;
+        private int loadedChunks;
+        private int reportedStep;
+
+        private Request(final WorldCreator creator, final CommandSender requester) {
+            this.creator = creator;
+            this.requester = requester;
+        }
+
+        private void loadNextChunk() {
+            final int x = spawnChunkX - SPAWN_RADIUS_CHUNKS + loadedChunks % DIAMETER;
+            final int z = spawnChunkZ - SPAWN_RADIUS_CHUNKS + loadedChunks / DIAMETER;
+            world.loadChunk(x, z, true);
+            loadedChunks++;
+        }
+
+        private boolean isPreloaded() {
+            return loadedChunks >= TOTAL_CHUNKS;
+        }
+
+        private int getProgressPercent() {
+            return loadedChunks * 100 / TOTAL_CHUNKS;
+        }
+
+        private void reportProgress() {
+            final int step = loadedChunks * PROGRESS_STEPS / TOTAL_CHUNKS;
+            if (step > reportedStep && !isPreloaded()) {
+                reportedStep = step;
+                CommandSenders.sendIfOnline(requester, ChatColor.GRAY + "Preparing spawn area of " +
+                    creator.name() + "... (" + getProgressPercent() + "%)");
+            }
+        }
+    }
+}
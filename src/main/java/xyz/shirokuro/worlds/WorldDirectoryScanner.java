@@ -0,0 +1,163 @@
+package xyz.shirokuro.worlds;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Names of the directories in the world container that contain level.dat, indexed for tab completion.
+ * The container is scanned once on a background thread and then kept up to date by watching it,
+ * so lookups never touch the disk on the main thread.
+ * Only the container itself is watched, so new directories without level.dat are checked again
+ * for a while until the server or a copy creates it.
+ */
+public final class WorldDirectoryScanner implements Listener {
+
+    private static final long WATCH_DEBOUNCE_MILLIS = 1000;
+    private static final long RECHECK_INTERVAL_TICKS = 20 * 2;
+    private static final long RECHECK_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final WorldNameIndex index = new WorldNameIndex();
+    private final Path worldContainer;
+    /**
+     * Directories without level.dat to check again, to the time to give up in {@link System#nanoTime()}
+     */
+    private final Map<String, Long> pendingDirectories = new ConcurrentHashMap<>();
+    /**
+     * Names checked by the watcher while the initial scan runs. The scan result is older than them.
+     * Guarded by {@code this}, and {@code null} once the scan finishes.
+     */
+    private Set<String> checkedDuringScan = new HashSet<>();
+    private DirectoryWatcher directoryWatcher;
+
+    public WorldDirectoryScanner(final Path worldContainer) {
+        this.worldContainer = Objects.requireNonNull(worldContainer, "worldContainer");
+    }
+
+    /**
+     * Starts watching the world container and scans it asynchronously.
+     *
+     * @param plugin plugin to run the scan
+     */
+    public void start(final Plugin plugin) {
+        // Watch first, so directories created during the scan are not missed
+        try {
+            this.directoryWatcher = DirectoryWatcher.start(worldContainer, WATCH_DEBOUNCE_MILLIS,
+                changed -> changed.forEach(name -> onChanged(name.toString())));
+        } catch (IOException e) {
+            Logger.warn("Failed to watch " + worldContainer + ". New world directories will not be suggested", e);
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, this::scan);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::recheckPending,
+            RECHECK_INTERVAL_TICKS, RECHECK_INTERVAL_TICKS);
+    }
+
+    public void close() {
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+    }
+
+    /**
+     * Returns whether specified directory in the world container is a world.
+     * The disk is checked only if the directory is not known as a world yet.
+     *
+     * @param worldName name of the directory
+     * @return {@code true} if the directory contains level.dat
+     */
+    public boolean isWorld(final String worldName) {
+        return index.contains(worldName) || rescan(worldName);
+    }
+
+    /**
+     * @see WorldNameIndex#search(String, Predicate)
+     */
+    public List<String> search(final String prefix, final Predicate<String> filter) {
+        return index.search(prefix, filter);
+    }
+
+    private void scan() {
+        final long start = System.nanoTime();
+        final List<String> worldNames = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(worldContainer, Files::isDirectory)) {
+            for (final Path dir : stream) {
+                if (Files.isRegularFile(dir.resolve("level.dat"))) {
+                    worldNames.add(dir.getFileName().toString());
+                }
+            }
+        } catch (IOException e) {
+            Logger.warn("Failed to scan " + worldContainer, e);
+            synchronized (this) {
+                checkedDuringScan = null;
+            }
+            return;
+        }
+        synchronized (this) {
+            for (final String worldName : worldNames) {
+                if (!checkedDuringScan.contains(worldName)) {
+                    index.add(worldName);
+                }
+            }
+            checkedDuringScan = null;
+        }
+        Logger.info(String.format(Locale.ROOT, "Found %d world directories in %.1fms",
+            worldNames.size(), (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    private void onChanged(final String worldName) {
+        if (!rescan(worldName) && Files.isDirectory(worldContainer.resolve(worldName))) {
+            // level.dat is usually written after the directory is created
+            pendingDirectories.put(worldName, System.nanoTime() + RECHECK_TIMEOUT_NANOS);
+        }
+    }
+
+    private void recheckPending() {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<String, Long>> iterator = pendingDirectories.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            final boolean done = rescan(entry.getKey()) ||
+                now - entry.getValue() > 0 ||
+                !Files.isDirectory(worldContainer.resolve(entry.getKey()));
+            if (done) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized boolean rescan(final String worldName) {
+        if (checkedDuringScan != null) {
+            checkedDuringScan.add(worldName);
+        }
+        final boolean world = Files.isRegularFile(worldContainer.resolve(worldName).resolve("level.dat"));
+        if (world) {
+            index.add(worldName);
+        } else {
+            index.remove(worldName);
+        }
+        return world;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final WorldLoadEvent event) {
+        index.add(event.getWorld().getName());
+    }
+}
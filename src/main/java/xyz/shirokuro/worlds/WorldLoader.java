@@ -0,0 +1,338 @@
+package xyz.shirokuro.worlds;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Loads managed worlds across ticks.
+ * Each tick loads queued worlds until the configured time budget is used up,
+ * so registering many worlds doesn't freeze the server.
+ * All methods except {@link #getState(String)} must be called from the main thread.
+ */
+public final class WorldLoader implements Listener {
+
+    private static final int PROGRESS_STEPS = 10;
+
+    private final ConcurrentMap<String, State> states = new ConcurrentHashMap<>();
+    /**
+     * Creators resolved by {@link #prepare}, or empty if the world directory doesn't exist.
+     * Entries are consumed when the world is loaded, and dropped by {@link #invalidate(String)}.
+     * A check that completes after its entry is dropped completes a future nobody reads, so it can't revive the entry.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Optional<WorldCreator>>> prepared =
+        new ConcurrentHashMap<>();
+    private final Deque<String> queue = new ArrayDeque<>();
+    private final Map<String, CompletableFuture<World>> pending = new HashMap<>();
+    private final Plugin plugin;
+    private final Config config;
+    private final WorldConfigList worldConfigList;
+    private final Metrics.Timer loadTimer;
+    private BukkitTask task;
+    private int total;
+    private int processed;
+    private long startedAt;
+
+    public WorldLoader(
+        final Plugin plugin,
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final Metrics metrics) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.loadTimer = metrics.timer("world_load");
+    }
+
+    /**
+     * Enqueues specified worlds and starts loading them from the next tick.
+     * Worlds that are already loaded or queued are ignored.
+     *
+     * @param worldNames names of the worlds to load
+     */
+    public void enqueue(final Collection<String> worldNames) {
+        Objects.requireNonNull(worldNames, "worldNames");
+        for (final String worldName : worldNames) {
+            if (getState(worldName) != State.NOT_LOADED) {
+                continue;
+            }
+            if (Bukkit.getWorld(worldName) != null) {
+                states.put(worldName, State.LOADED);
+                continue;
+            }
+            states.put(worldName, State.QUEUED);
+            queue.addLast(worldName);
+            total++;
+        }
+        startIfNeeded();
+    }
+
+    /**
+     * Loads specified world ahead of other queued worlds.
+     * Concurrent requests for the same world share a single load.
+     * Returned future fails with {@code NoSuchFileException} if the world directory doesn't exist.
+     *
+     * @param worldName name of the world
+     * @return future that completes on the main thread once the world is loaded
+     */
+    public CompletableFuture<World> load(final String worldName) {
+        Objects.requireNonNull(worldName, "worldName");
+        final World loaded = Bukkit.getWorld(worldName);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+        final CompletableFuture<World> inFlight = pending.get(worldName);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        final CompletableFuture<World> future = new CompletableFuture<>();
+        pending.put(worldName, future);
+        if (!queue.remove(worldName)) {
+            states.put(worldName, State.QUEUED);
+            total++;
+        }
+        queue.addFirst(worldName);
+        startIfNeeded();
+        return future;
+    }
+
+    /**
+     * Checks directories of specified worlds and resolves their creators on {@code executor},
+     * so loading them later doesn't touch the disk on the main thread.
+     *
+     * @param worldNames names of the worlds to prepare
+     * @param executor executor to check directories on
+     * @return future that completes once all worlds are checked
+     */
+    public CompletableFuture<Void> prepare(final Collection<String> worldNames, final Executor executor) {
+        Objects.requireNonNull(worldNames, "worldNames");
+        Objects.requireNonNull(executor, "executor");
+        final Path worldContainer = Bukkit.getWorldContainer().toPath();
+        final List<CompletableFuture<Optional<WorldCreator>>> checks = worldNames.stream()
+            .map(worldName -> {
+                final CompletableFuture<Optional<WorldCreator>> check = CompletableFuture.supplyAsync(
+                    () -> Optional.ofNullable(resolveCreator(worldName, worldContainer.resolve(worldName))),
+                    executor);
+                prepared.put(worldName, check);
+                return check;
+            })
+            .collect(Collectors.toList());
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Drops the creator resolved by {@link #prepare} for specified world,
+     * so the directory is checked again when the world is loaded.
+     * This must be called when the world is added, removed or its directory is replaced.
+     *
+     * @param worldName name of the world
+     */
+    public void invalidate(final String worldName) {
+        prepared.remove(Objects.requireNonNull(worldName, "worldName"));
+    }
+
+    /**
+     * Returns creator of specified world.
+     *
+     * @return creator, or {@code null} if the world directory doesn't exist
+     */
+    private static WorldCreator resolveCreator(final String worldName, final Path worldDir) {
+        if (!Files.isDirectory(worldDir)) {
+            return null;
+        }
+        if (!Files.isRegularFile(worldDir.resolve("level.dat"))) {
+            Logger.warn("World: " + worldName + " has no level.dat. It will be generated as a new world.");
+        }
+        return WorldCreator.name(worldName).environment(detectEnvironment(worldDir));
+    }
+
+    /**
+     * Detects environment of the world stored in specified directory.
+     * The server takes the environment from {@code WorldCreator} instead of level.dat,
+     * so it is detected from the directories the server creates for the nether and the end.
+     *
+     * @param worldDir directory of the world
+     * @return detected environment, or {@code NORMAL} if neither directory exists
+     */
+    static World.Environment detectEnvironment(final Path worldDir) {
+        if (Files.isDirectory(worldDir.resolve("DIM-1"))) {
+            return World.Environment.NETHER;
+        }
+        if (Files.isDirectory(worldDir.resolve("DIM1"))) {
+            return World.Environment.THE_END;
+        }
+        return World.Environment.NORMAL;
+    }
+
+    private void startIfNeeded() {
+        if (task == null && !queue.isEmpty()) {
+            startedAt = System.nanoTime();
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+    }
+
+    /**
+     * Removes specified world from the queue if it is not loaded yet.
+     *
+     * @param worldName name of the world
+     */
+    public void cancel(final String worldName) {
+        invalidate(worldName);
+        if (queue.remove(worldName)) {
+            states.remove(worldName);
+            processed++;
+            fail(worldName, new CancellationException("Loading of " + worldName + " was cancelled"));
+        }
+    }
+
+    /**
+     * Returns loading state of specified world.
+     *
+     * @param worldName name of the world
+     * @return loading state
+     */
+    public State getState(final String worldName) {
+        return states.getOrDefault(worldName, State.NOT_LOADED);
+    }
+
+    public boolean isLoaded(final String worldName) {
+        return getState(worldName) == State.LOADED;
+    }
+
+    private void tick() {
+        final long deadline = System.nanoTime() +
+            TimeUnit.MILLISECONDS.toNanos(config.getWorldLoadBudgetMillis());
+        // Load at least one world per tick even if the budget is tiny
+        do {
+            final String worldName = queue.pollFirst();
+            if (worldName == null) {
+                break;
+            }
+            loadNow(worldName);
+            processed++;
+            reportProgress();
+        } while (System.nanoTime() < deadline);
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+            if (total > 1) {
+                Logger.info("Loaded " + processed + " worlds in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + "ms");
+            }
+            total = 0;
+            processed = 0;
+        }
+    }
+
+    private void reportProgress() {
+        final int step = Math.max(1, total / PROGRESS_STEPS);
+        if (processed % step == 0 && processed != total) {
+            Logger.info("Loading worlds... (" + processed + "/" + total + ")");
+        }
+    }
+
+    private void loadNow(final String worldName) {
+        final WorldConfig worldConfig = worldConfigList.get(worldName).orElse(null);
+        if (worldConfig == null) {
+            // Removed while queued
+            states.remove(worldName);
+            fail(worldName, new CancellationException(worldName + " is no longer managed"));
+            return;
+        }
+        final Path worldDir = Bukkit.getWorldContainer().toPath().resolve(worldName);
+        final CompletableFuture<Optional<WorldCreator>> preparedCreator = prepared.remove(worldName);
+        final WorldCreator creator;
+        if (preparedCreator != null && preparedCreator.isDone() && !preparedCreator.isCompletedExceptionally()) {
+            creator = preparedCreator.join().orElse(null);
+        } else {
+            // Checks that haven't finished or failed are done here instead of waiting
+            creator = resolveCreator(worldName, worldDir);
+        }
+        if (creator == null) {
+            Logger.warn("World: " + worldName + " is registered in worlds.yml but not exist!");
+            states.remove(worldName);
+            fail(worldName, new NoSuchFileException(worldDir.toString()));
+            return;
+        }
+        final long start = System.nanoTime();
+        final World world;
+        try {
+            world = creator.createWorld();
+        } catch (RuntimeException e) {
+            Logger.error("Failed to load world: " + worldName, e);
+            states.remove(worldName);
+            fail(worldName, e);
+            return;
+        }
+        states.put(worldName, State.LOADED);
+        worldConfig.apply(world, config.getDefaultWorldConfig());
+        loadTimer.recordSince(start);
+        complete(worldName, world);
+    }
+
+    private void complete(final String worldName, final World world) {
+        final CompletableFuture<World> future = pending.remove(worldName);
+        if (future != null) {
+            future.complete(world);
+        }
+    }
+
+    private void fail(final String worldName, final Throwable cause) {
+        final CompletableFuture<World> future = pending.remove(worldName);
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    @EventHandler
+    public void onWorldLoad(final WorldLoadEvent event) {
+        final World world = event.getWorld();
+        final String worldName = world.getName();
+        states.put(worldName, State.LOADED);
+        invalidate(worldName);
+        if (queue.remove(worldName)) {
+            // Loaded by someone else before our turn
+            processed++;
+            worldConfigList.get(worldName)
+                .ifPresent(worldConfig -> worldConfig.apply(world, config.getDefaultWorldConfig()));
+            complete(worldName, world);
+        }
+    }
+
+    // Another plugin may cancel the unload, and the world stays loaded then
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        states.remove(event.getWorld().getName());
+    }
+
+    public enum State {
+        NOT_LOADED,
+        QUEUED,
+        LOADED
+    }
+}
@@ -0,0 +1,80 @@
+package xyz.shirokuro.worlds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Sorted set of world names that supports fast prefix searches.
+ * Searching visits only names that start with the prefix, so tab completion
+ * stays cheap with thousands of worlds. This class is thread-safe.
+ */
+public final class WorldNameIndex {
+
+    /**
+     * Maximum number of names returned by a search
+     */
+    public static final int MAX_RESULTS = 100;
+
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+
+    public void add(final String worldName) {
+        names.add(Objects.requireNonNull(worldName, "worldName"));
+    }
+
+    public void remove(final String worldName) {
+        names.remove(Objects.requireNonNull(worldName, "worldName"));
+    }
+
+    public boolean contains(final String worldName) {
+        return names.contains(Objects.requireNonNull(worldName, "worldName"));
+    }
+
+    /**
+     * Replaces all names with specified ones.
+     *
+     * @param worldNames new names
+     */
+    public void replaceAll(final Collection<String> worldNames) {
+        Objects.requireNonNull(worldNames, "worldNames");
+        names.retainAll(worldNames);
+        names.addAll(worldNames);
+    }
+
+    /**
+     * Returns up to {@link #MAX_RESULTS} names that start with specified prefix, in sorted order.
+     *
+     * @param prefix prefix of the names
+     * @return names
+     */
+    public List<String> search(final String prefix) {
+        return search(prefix, worldName -> true);
+    }
+
+    /**
+     * Returns up to {@link #MAX_RESULTS} names that start with specified prefix
+     * and match {@code filter}, in sorted order.
+     *
+     * @param prefix prefix of the names
+     * @param filter filter applied to the names
+     * @return names
+     */
+    public List<String> search(final String prefix, final Predicate<String> filter) {
+        Objects.requireNonNull(prefix, "prefix");
+        Objects.requireNonNull(filter, "filter");
+        final List<String> result = new ArrayList<>();
+        for (final String worldName : names.tailSet(prefix, true)) {
+            if (!worldName.startsWith(prefix) || result.size() >= MAX_RESULTS) {
+                break;
+            }
+            if (filter.test(worldName)) {
+                result.add(worldName);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package xyz.shirokuro.worlds;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pattern that matches world names.
+ * Like {@link java.nio.file.FileSystem#getPathMatcher(String)}, the syntax is selected by a prefix:
+ * {@code regex:} for regular expressions and {@code glob:} (the default) for globs,
+ * where {@code *} matches any characters and {@code ?} matches one character.
+ */
+public final class WorldNamePattern {
+
+    private static final String GLOB_PREFIX = "glob:";
+    private static final String REGEX_PREFIX = "regex:";
+
+    private final String source;
+    private final Pattern pattern;
+
+    private WorldNamePattern(final String source, final Pattern pattern) {
+        this.source = source;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Parses specified pattern.
+     *
+     * @param source pattern with an optional syntax prefix
+     * @return parsed pattern
+     * @throws PatternSyntaxException if the pattern is invalid
+     */
+    public static WorldNamePattern parse(final String source) {
+        Objects.requireNonNull(source, "source");
+        if (source.startsWith(REGEX_PREFIX)) {
+            return new WorldNamePattern(source, Pattern.compile(source.substring(REGEX_PREFIX.length())));
+        }
+        final String glob = source.startsWith(GLOB_PREFIX) ? source.substring(GLOB_PREFIX.length()) : source;
+        return new WorldNamePattern(source, Pattern.compile(globToRegex(glob)));
+    }
+
+    private static String globToRegex(final String glob) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (final char c : glob.toCharArray()) {
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '*' ? ".*" : ".");
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Returns whether specified name matches whole of this pattern.
+     *
+     * @param worldName name of the world
+     * @return {@code true} if matches
+     */
+    public boolean matches(final String worldName) {
+        return pattern.matcher(worldName).matches();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,81 @@
+package xyz.shirokuro.worlds;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import xyz.shirokuro.commandutility.ExecutionData;
+import xyz.shirokuro.commandutility.annotation.Executor;
+
+public final class WorldsBackupCommands {
+
+    private final WorldBackups worldBackups;
+
+    public WorldsBackupCommands(final WorldBackups worldBackups) {
+        this.worldBackups = Objects.requireNonNull(worldBackups, "worldBackups");
+    }
+
+    @Executor(command = "world backup <world:worlds>", description = "Take a backup of specified world")
+    public void executeBackup(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        sender.sendMessage(ChatColor.GRAY + "Backing up " + worldName + "...");
+        worldBackups.backup(worldName).whenComplete((result, t) -> {
+            if (t != null) {
+                sender.sendMessage(ChatColor.RED + "Failed to back up " + worldName + "! Error: " + getMessage(t));
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + String.format(Locale.ROOT,
+                "Backed up as %s (%d of %d files changed, %.1f MB)",
+                result.getSnapshotId(),
+                result.getChangedFiles(),
+                result.getFiles(),
+                result.getTotalBytes() / 1024.0 / 1024.0));
+        });
+    }
+
+    @Executor(command = "world backups <world>", description = "List backups of specified world")
+    public void executeBackups(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        worldBackups.list(worldName).whenComplete((snapshotIds, t) -> {
+            if (t != null) {
+                sender.sendMessage(ChatColor.RED + "Failed to list backups! Error: " + getMessage(t));
+                return;
+            }
+            if (snapshotIds.isEmpty()) {
+                sender.sendMessage(ChatColor.GRAY + "World: " + worldName + " has no backups");
+                return;
+            }
+            sender.sendMessage(ChatColor.BOLD + "Backups of " + worldName);
+            for (final String snapshotId : snapshotIds) {
+                sender.sendMessage("  - " + snapshotId);
+            }
+        });
+    }
+
+    @Executor(
+        command = "world restore <world> <backup>",
+        description = "Replace specified world with a backup (players must leave the world)"
+    )
+    public void executeRestore(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        final String snapshotId = data.get("backup");
+        sender.sendMessage(ChatColor.GRAY + "Restoring " + worldName + " from " + snapshotId + "...");
+        worldBackups.restore(worldName, snapshotId).whenComplete((v, t) -> {
+            if (t != null) {
+                sender.sendMessage(ChatColor.RED + "Failed to restore " + worldName + "! Error: " + getMessage(t));
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "Restored!");
+        });
+    }
+
+    private static String getMessage(final Throwable t) {
+        final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return cause.getMessage();
+    }
+}
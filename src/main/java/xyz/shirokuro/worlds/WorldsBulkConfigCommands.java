@@ -0,0 +1,226 @@
+package xyz.shirokuro.worlds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import xyz.shirokuro.commandutility.CompletionData;
+import xyz.shirokuro.commandutility.ExecutionData;
+import xyz.shirokuro.commandutility.annotation.Completer;
+import xyz.shirokuro.commandutility.annotation.Executor;
+
+/**
+ * Commands that change configuration of all managed worlds matching a {@link WorldNamePattern}.
+ * Changes are applied as one update of {@link WorldConfigList}, and the list is saved once.
+ */
+public final class WorldsBulkConfigCommands {
+
+    private static final String DRY_RUN = "--dry-run";
+    /**
+     * Maximum number of world names listed by a dry run
+     */
+    private static final int MAX_LISTED_WORLDS = 50;
+
+    private final Config config;
+    private final WorldConfigList worldConfigList;
+    private final GameModeEnforcer gameModeEnforcer;
+    private final BatchApplier batchApplier;
+
+    public WorldsBulkConfigCommands(
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final GameModeEnforcer gameModeEnforcer,
+        final BatchApplier batchApplier) {
+        this.config = Objects.requireNonNull(config, "config");
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.gameModeEnforcer = Objects.requireNonNull(gameModeEnforcer, "gameModeEnforcer");
+        this.batchApplier = Objects.requireNonNull(batchApplier, "batchApplier");
+    }
+
+    @Executor(
+        command = "world bulk gamemode <pattern> <gamemode> [option]",
+        description = "Set gamemode of managed worlds matching glob or regex: pattern (--dry-run to preview)"
+    )
+    public void executeBulkGameMode(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final GameMode gameMode;
+        try {
+            gameMode = GameMode.valueOf(data.get("gamemode").toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatColor.RED + data.get("gamemode") + " is invalid game mode");
+            return;
+        }
+        final Map<String, WorldConfig> updated = update(data, c -> c.withGameMode(gameMode));
+        if (updated == null) {
+            return;
+        }
+        final List<Player> players = new ArrayList<>();
+        for (final String worldName : updated.keySet()) {
+            final World world = Bukkit.getWorld(worldName);
+            if (world != null) {
+                players.addAll(world.getPlayers());
+            }
+        }
+        // Players are updated across ticks; skip those who moved to a world whose game mode differs
+        batchApplier.submit(players, p -> {
+            if (p.isOnline() && updated.containsKey(p.getWorld().getName())) {
+                gameModeEnforcer.enforce(p, gameMode);
+            }
+        }).thenAccept(count -> {
+            sender.sendMessage(ChatColor.GREEN + "Updated " + updated.size() + " worlds! (" +
+                    count + " players in the worlds)");
+        });
+    }
+
+    @Completer(command = "world bulk gamemode <pattern> <gamemode> [option]")
+    public List<String> completeBulkGameMode(final CompletionData data) {
+        switch (data.getName()) {
+            case "gamemode":
+                return Arrays.stream(GameMode.values())
+                    .map(GameMode::name)
+                    .filter(s -> s.startsWith(data.getCurrentValue()))
+                    .collect(Collectors.toList());
+            case "option":
+                return completeOption(data);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    @Executor(
+        command = "world bulk keepspawninmemory <pattern> <value> [option]",
+        description = "Set wether to keep spawn in memory of managed worlds matching pattern (--dry-run to preview)"
+    )
+    public void executeBulkKeepSpawnInMemory(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final boolean keepSpawnInMemory = Boolean.parseBoolean(data.get("value"));
+        final Map<String, WorldConfig> updated = update(data, c -> c.withKeepSpawnInMemory(keepSpawnInMemory));
+        if (updated == null) {
+            return;
+        }
+        final List<World> worlds = updated.keySet().stream()
+            .map(Bukkit::getWorld)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        // Loading or releasing spawn chunks is expensive, so worlds are updated across ticks
+        batchApplier.submit(worlds, world -> {
+            worldConfigList.get(world).ifPresent(c -> c.apply(world, config.getDefaultWorldConfig()));
+        }).thenAccept(count -> {
+            sender.sendMessage(ChatColor.GREEN + "Updated " + updated.size() + " worlds! (" +
+                    count + " loaded)");
+        });
+    }
+
+    @Completer(command = "world bulk keepspawninmemory <pattern> <value> [option]")
+    public List<String> completeBulkKeepSpawnInMemory(final CompletionData data) {
+        switch (data.getName()) {
+            case "value":
+                return Arrays.asList("true", "false").stream()
+                    .filter(s -> s.startsWith(data.getCurrentValue()))
+                    .collect(Collectors.toList());
+            case "option":
+                return completeOption(data);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    @Executor(
+        command = "world bulk spawn <pattern> <x> <y> <z> <yaw> <pitch> [option]",
+        description = "Set spawn location of managed worlds matching pattern (--dry-run to preview)"
+    )
+    public void executeBulkSpawn(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final Coord spawn;
+        try {
+            spawn = new Coord(
+                Double.parseDouble(data.get("x")),
+                Double.parseDouble(data.get("y")),
+                Double.parseDouble(data.get("z")),
+                Float.parseFloat(data.get("yaw")),
+                Float.parseFloat(data.get("pitch")));
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + e.getMessage());
+            return;
+        }
+        final Map<String, WorldConfig> updated = update(data, c -> c.withSpawn(spawn));
+        if (updated != null) {
+            sender.sendMessage(ChatColor.GREEN + "Updated " + updated.size() + " worlds!");
+        }
+    }
+
+    @Completer(command = "world bulk spawn <pattern> <x> <y> <z> <yaw> <pitch> [option]")
+    public List<String> completeBulkSpawn(final CompletionData data) {
+        return data.getName().equals("option")
+            ? completeOption(data)
+            : Collections.emptyList();
+    }
+
+    private static List<String> completeOption(final CompletionData data) {
+        return DRY_RUN.startsWith(data.getCurrentValue())
+            ? Collections.singletonList(DRY_RUN)
+            : Collections.emptyList();
+    }
+
+    /**
+     * Updates the worlds matching {@code pattern} argument and saves the list,
+     * or lists them if {@code option} argument is {@value #DRY_RUN}.
+     *
+     * @return updated worlds, or {@code null} if nothing was updated
+     */
+    private Map<String, WorldConfig> update(final ExecutionData data, final UnaryOperator<WorldConfig> updater) {
+        final CommandSender sender = data.getSender();
+        final String option = data.get("option");
+        if (option != null && !option.equals(DRY_RUN)) {
+            sender.sendMessage(ChatColor.RED + "Unknown option: " + option);
+            return null;
+        }
+        final WorldNamePattern pattern;
+        try {
+            pattern = WorldNamePattern.parse(data.get("pattern"));
+        } catch (PatternSyntaxException e) {
+            sender.sendMessage(ChatColor.RED + "Invalid pattern: " + e.getDescription());
+            return null;
+        }
+        final List<String> worldNames = worldConfigList.getMap().keySet().stream()
+            .filter(pattern::matches)
+            .sorted()
+            .collect(Collectors.toList());
+        if (worldNames.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "No managed worlds match " + pattern);
+            return null;
+        }
+        if (option != null) {
+            sender.sendMessage(ChatColor.BOLD + "" + worldNames.size() + " worlds match " + pattern);
+            worldNames.stream()
+                .limit(MAX_LISTED_WORLDS)
+                .forEach(worldName -> sender.sendMessage("  - " + worldName));
+            if (worldNames.size() > MAX_LISTED_WORLDS) {
+                sender.sendMessage(ChatColor.GRAY + "  ... and " +
+                        (worldNames.size() - MAX_LISTED_WORLDS) + " more");
+            }
+            return null;
+        }
+        final Map<String, WorldConfig> updated = worldConfigList.updateAll(worldNames, updater);
+        worldConfigList.save()
+            .exceptionally(t -> {
+                sender.sendMessage(ChatColor.RED + "Failed to save configuration! Error: " +
+                        t.getMessage());
+                Logger.error("An exception occurred while saving world configuration", t);
+                return null;
+            });
+        return updated;
+    }
+}
@@ -1,14 +1,20 @@
 package xyz.shirokuro.worlds;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -30,26 +36,62 @@ public final class WorldsCommands {
     private final WorldConfigList worldConfigList;
     private final Config config;
     private final Plugin plugin;
+    private final WorldLoader worldLoader;
+    private final ConfigReloader configReloader;
+    private final GameModeEnforcer gameModeEnforcer;
+    private final BatchApplier batchApplier;
+    private final LoadedWorldNames loadedWorldNames;
+    private final Metrics metrics;
+    private final WorldCreationQueue creationQueue;
+    private final ChunkPrefetcher chunkPrefetcher;
+    private final WorldCloner worldCloner;
+    private final WorldDirectoryScanner worldDirectoryScanner;
+    private final DiskUsageAccountant diskUsageAccountant;
 
-    public WorldsCommands(final Plugin plugin ,final Config config, final WorldConfigList worldConfigList) {
+    public WorldsCommands(
+        final Plugin plugin,
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final WorldLoader worldLoader,
+        final ConfigReloader configReloader,
+        final GameModeEnforcer gameModeEnforcer,
+        final BatchApplier batchApplier,
+        final LoadedWorldNames loadedWorldNames,
+        final Metrics metrics,
+        final WorldCreationQueue creationQueue,
+        final ChunkPrefetcher chunkPrefetcher,
+        final WorldCloner worldCloner,
+        final WorldDirectoryScanner worldDirectoryScanner,
+        final DiskUsageAccountant diskUsageAccountant) {
         this.plugin = Objects.requireNonNull(plugin, "plugin");
         this.config = Objects.requireNonNull(config, "config");
         this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.worldLoader = Objects.requireNonNull(worldLoader, "worldLoader");
+        this.configReloader = Objects.requireNonNull(configReloader, "configReloader");
+        this.gameModeEnforcer = Objects.requireNonNull(gameModeEnforcer, "gameModeEnforcer");
+        this.batchApplier = Objects.requireNonNull(batchApplier, "batchApplier");
+        this.loadedWorldNames = Objects.requireNonNull(loadedWorldNames, "loadedWorldNames");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.creationQueue = Objects.requireNonNull(creationQueue, "creationQueue");
+        this.chunkPrefetcher = Objects.requireNonNull(chunkPrefetcher, "chunkPrefetcher");
+        this.worldCloner = Objects.requireNonNull(worldCloner, "worldCloner");
+        this.worldDirectoryScanner = Objects.requireNonNull(worldDirectoryScanner, "worldDirectoryScanner");
+        this.diskUsageAccountant = Objects.requireNonNull(diskUsageAccountant, "diskUsageAccountant");
     }
 
-    @Executor(command = "world spawn", description = "Teleport to current world's spawn")
+    @Executor(command = "world spawn [world:managedworlds]", description = "Teleport to current/specified world's spawn")
     public void executeSpawn(final ExecutionData data) {
         final Player player = data.getSenderAsPlayer();
         if (player == null) {
             data.getSender().sendMessage(ChatColor.RED + "Cannot perform command from the console");
             return;
         }
-        final World world = player.getWorld();
-        final Location dest = worldConfigList.get(world)
-            .flatMap(WorldConfig::getSpawn)
-            .map(coord -> coord.withWorld(world))
-            .orElse(world.getSpawnLocation());
-        player.teleport(dest);
+        final String worldName = data.get("world");
+        if (worldName == null) {
+            teleportToSpawn(player, player.getWorld());
+            return;
+        }
+        loadAndTeleport(player, worldName);
     }
 
     @Executor(command = "world list", description = "List all worlds")
@@ -63,18 +105,55 @@ public final class WorldsCommands {
                 final String status = worldConfigList.get(worldName).isPresent()
                     ? ChatColor.GREEN + "Managed"
                     : ChatColor.RED + "Not managed";
+                final OptionalLong size = diskUsageAccountant.getSize(worldName);
                 sender.sendMessage("  - " + worldName + ChatColor.GRAY +
-                        " (" + status + ChatColor.GRAY + ")");
+                        " (" + status + ChatColor.GRAY +
+                        (size.isPresent() ? ", " + formatSize(size.getAsLong()) : "") + ")");
             });
+        sender.sendMessage(ChatColor.BOLD + "Loading:");
+        worldConfigList.getMap().keySet().stream()
+            .filter(w -> worldLoader.getState(w) == WorldLoader.State.QUEUED)
+            .sorted(Comparator.naturalOrder())
+            .forEach(w -> sender.sendMessage("  - " + w));
         sender.sendMessage(ChatColor.BOLD + "Can't be loaded:");
         worldConfigList.getMap().keySet().stream()
+            .filter(w -> worldLoader.getState(w) == WorldLoader.State.NOT_LOADED)
             .filter(w -> Bukkit.getWorld(w) == null)
             .sorted(Comparator.naturalOrder())
             .forEach(w -> sender.sendMessage("  - " + w));
     }
 
-    private void saveWorldConfigList(final CommandSender sender) {
-        worldConfigList.save()
+    @Executor(command = "world du", description = "Show disk usage of managed worlds")
+    public void executeDu(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final Map<String, Long> sizes = diskUsageAccountant.getSizes();
+        if (diskUsageAccountant.isScanning()) {
+            sender.sendMessage(ChatColor.GRAY + "Measuring disk usage in the background...");
+        }
+        if (sizes.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "Disk usage is not measured yet");
+            return;
+        }
+        sender.sendMessage(ChatColor.BOLD + "Disk usage: " + formatSize(sizes.values().stream()
+            .mapToLong(Long::longValue)
+            .sum()));
+        sizes.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .forEach(entry -> sender.sendMessage("  - " + entry.getKey() + ": " + formatSize(entry.getValue())));
+    }
+
+    private static String formatSize(final long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / 1024.0 / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.2f GB", bytes / 1024.0 / 1024.0 / 1024.0);
+    }
+
+    private void saveWorldConfigList(final CommandSender sender, final String worldName) {
+        worldConfigList.saveWorld(worldName)
             .exceptionally(t -> {
                 sender.sendMessage(ChatColor.RED + "Failed to save configuration! Error: " +
                         t.getMessage());
@@ -95,7 +174,7 @@ public final class WorldsCommands {
         }
         final World world = Optional.ofNullable(Bukkit.getWorld(worldName))
             .orElseGet(() -> {
-                return Files.exists(Bukkit.getWorldContainer().toPath().resolve(worldName))
+                return worldDirectoryScanner.isWorld(worldName)
                     ? WorldCreator.name(worldName).createWorld()
                     : null;
             });
@@ -106,21 +185,21 @@ public final class WorldsCommands {
             return;
         }
         final WorldConfig worldConfig = WorldConfig.fromDefault(config.getDefaultWorldConfig());
-        worldConfig.apply(world);
-        world.getPlayers().forEach(p -> worldConfig.updateGameModeIfNeeded(config, p));
+        worldConfig.apply(world, config.getDefaultWorldConfig());
         worldConfigList.add(worldName, worldConfig);
-        sender.sendMessage(ChatColor.GREEN + "Imported!");
-        saveWorldConfigList(sender);
+        saveWorldConfigList(sender, worldName);
+        batchApplier.submit(world.getPlayers(), p -> {
+            if (p.isOnline() && p.getWorld().equals(world)) {
+                gameModeEnforcer.enforce(p, worldConfig.getGameMode());
+            }
+        }).thenRun(() -> sender.sendMessage(ChatColor.GREEN + "Imported!"));
     }
 
     @Completer(command = "world import <world>")
     public List<String> completeImport(final CompletionData data) {
         if (data.getName().equals("world")) {
-            return Bukkit.getWorlds().stream()
-                .map(World::getName)
-                .filter(w -> !worldConfigList.get(w).isPresent())
-                .filter(w -> w.startsWith(data.getCurrentValue()))
-                .collect(Collectors.toList());
+            // Includes unloaded worlds
+            return worldDirectoryScanner.search(data.getCurrentValue(), w -> !worldConfigList.get(w).isPresent());
         } else {
             throw new RuntimeException("Unreachable");
         }
@@ -129,33 +208,37 @@ public final class WorldsCommands {
     @Executor(command = "world reload", description = "Reload configuiration")
     public void executeReload(final ExecutionData data) {
         final CommandSender sender = data.getSender();
-        CompletableFuture.runAsync(() -> {
-            sender.sendMessage(ChatColor.GRAY + "Reloading...");
-            try {
-                config.reload();
-                worldConfigList.reload();
-            } catch (IOException | ConfigException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                Bukkit.getWorlds().forEach(w -> {
-                    worldConfigList.get(w).ifPresent(worldConfig -> {
-                        worldConfig.apply(w);
-                    });
-                });
-                Bukkit.getOnlinePlayers().forEach(p -> {
-                    worldConfigList.get(p.getWorld()).ifPresent(worldConfig -> {
-                        worldConfig.updateGameModeIfNeeded(config, p);
-                    });
-                });
-                sender.sendMessage(ChatColor.GREEN + "Reloaded!");
+        sender.sendMessage(ChatColor.GRAY + "Reloading...");
+        configReloader.reload()
+            .thenAccept(changed -> {
+                sender.sendMessage(changed
+                    ? ChatColor.GREEN + "Reloaded!"
+                    : ChatColor.GREEN + "Reloaded! (Nothing changed)");
+            })
+            .exceptionally(t -> {
+                sender.sendMessage(ChatColor.RED +
+                        "Failed to reload configuration! Error: " + t.getMessage());
+                Logger.error("An exception occurred while reloading configuration", t);
+                return null;
             });
-        }).exceptionally(t -> {
-            sender.sendMessage(ChatColor.RED +
-                    "Failed to reload configuration! Error: " + t.getMessage());
-            Logger.error("An exception occurred while reloading configuration", t);
-            return null;
+    }
+
+    @Executor(command = "world stats", description = "Show performance statistics")
+    public void executeStats(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        sender.sendMessage(ChatColor.BOLD + "Worlds: Stats");
+        metrics.getTimers().forEach((name, timer) -> {
+            sender.sendMessage(String.format(Locale.ROOT,
+                "  - %s: count=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                name,
+                timer.getCount(),
+                timer.getMeanMillis(),
+                timer.getPercentileMillis(0.5),
+                timer.getPercentileMillis(0.99),
+                timer.getMaxNanos() / 1_000_000.0));
         });
+        metrics.getCounters().forEach((name, value) -> sender.sendMessage("  - " + name + ": " + value));
+        metrics.getGauges().forEach((name, value) -> sender.sendMessage("  - " + name + ": " + value));
     }
 
     @Executor(command = "world remove <world>", description = "Remove specified world")
@@ -169,30 +252,58 @@ public final class WorldsCommands {
             return;
         }
         worldConfigList.remove(worldName);
+        worldLoader.cancel(worldName);
         if (Bukkit.getWorld(worldName) != null) {
+            final long start = System.nanoTime();
             Bukkit.unloadWorld(worldName, true);
+            metrics.timer("world_unload").recordSince(start);
         }
         sender.sendMessage(ChatColor.GREEN + "Removed!");
         sender.sendMessage(ChatColor.GRAY + "Note: Worlds will not delete world data. " +
                 "If you want to delete it, Please tell to server owner.");
-        saveWorldConfigList(sender);
+        saveWorldConfigList(sender, worldName);
     }
 
     @Completer(command = "world remove <world>")
     public List<String> completeRemove(final CompletionData data) {
         if (data.getName().equals("world")) {
-            return worldConfigList.getMap().keySet().stream()
-                .filter(w -> w.startsWith(data.getCurrentValue()))
-                .collect(Collectors.toList());
+            return worldConfigList.getWorldNamesStartingWith(data.getCurrentValue());
         } else {
             throw new RuntimeException("Unreachable");
         }
     }
 
-    @Executor(command = "world create <world>", description = "Create world by specified name")
+    @Executor(
+        command = "world create <world> [option] [template] [environment] [generator]",
+        description = "Create world by specified name, or copy template world by" +
+            " '--from <template> [environment] [generator]'"
+    )
     public void executeCreate(final ExecutionData data) {
         final CommandSender sender = data.getSender();
         final String worldName = data.get("world");
+        final String option = data.get("option");
+        final String templateName = data.get("template");
+        if (option != null && (!option.equals("--from") || templateName == null)) {
+            sender.sendMessage(ChatColor.RED +
+                    "Usage: /world create <world> [--from <template> [environment] [generator]]");
+            return;
+        }
+        final String environmentName = data.get("environment");
+        World.Environment environment = null;
+        if (environmentName != null) {
+            try {
+                environment = World.Environment.valueOf(environmentName.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + environmentName + " is invalid environment name");
+                return;
+            }
+        }
+        final int position = creationQueue.getPosition(worldName);
+        if (position >= 0) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " is already queued" +
+                    (position == 0 ? " and being created" : " (position: " + position + ")"));
+            return;
+        }
         if (worldConfigList.get(worldName).isPresent()) {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " is already exist in worlds.yml");
             return;
@@ -201,19 +312,133 @@ public final class WorldsCommands {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " is already exist");
             return;
         }
-        if (Files.exists(Bukkit.getWorldContainer().toPath().resolve(worldName))) {
+        final Path worldDir = resolveWorldDir(worldName);
+        if (worldDir == null) {
+            sender.sendMessage(ChatColor.RED + worldName + " is invalid world name");
+            return;
+        }
+        if (Files.exists(worldDir)) {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " is already exist! (but not loaded now!)");
             sender.sendMessage(ChatColor.RED + "You can import by executing `/world import`");
             return;
         }
-        sender.sendMessage(ChatColor.GRAY + "Creating...");
+        if (templateName != null) {
+            copyTemplate(sender, worldDir, templateName, environment, data.get("generator"));
+            return;
+        }
         final WorldCreator creator = WorldCreator.name(worldName);
         config.getDefaultWorldCreationConfig().configureWorldCreator(creator);
-        final World world = creator.createWorld();
-        config.getDefaultWorldConfig().apply(world);
-        worldConfigList.add(world, WorldConfig.fromDefault(config.getDefaultWorldConfig()));
-        saveWorldConfigList(sender);
-        sender.sendMessage(ChatColor.GREEN + "Created!");
+        enqueueCreation(sender, creator);
+    }
+
+    @Completer(command = "world create <world> [option] [template] [environment] [generator]")
+    public List<String> completeCreate(final CompletionData data) {
+        switch (data.getName()) {
+            case "option":
+                return "--from".startsWith(data.getCurrentValue())
+                    ? Collections.singletonList("--from")
+                    : Collections.emptyList();
+            case "template":
+                return worldDirectoryScanner.search(data.getCurrentValue(), w -> Bukkit.getWorld(w) == null);
+            case "environment":
+                return Arrays.stream(World.Environment.values())
+                    .map(World.Environment::name)
+                    .filter(s -> s.startsWith(data.getCurrentValue().toUpperCase(Locale.ENGLISH)))
+                    .collect(Collectors.toList());
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Copies directory of the template world and loads the copy.
+     * This is much faster than generating a world.
+     * The default creation config is not applied, since the copy must be loaded like the template.
+     *
+     * @param environment environment of the template, or {@code null} to detect it from the template directory
+     * @param generatorName generator of the template, or {@code null} to use the server's default
+     */
+    private void copyTemplate(
+        final CommandSender sender,
+        final Path worldDir,
+        final String templateName,
+        final World.Environment environment,
+        final String generatorName) {
+        final String worldName = worldDir.getFileName().toString();
+        final Path templateDir = resolveWorldDir(templateName);
+        if (templateDir == null || !Files.isRegularFile(templateDir.resolve("level.dat"))) {
+            sender.sendMessage(ChatColor.RED + "Template: " + templateName + " is not a world");
+            return;
+        }
+        // Files of loaded worlds may be modified while copying
+        if (Bukkit.getWorld(templateName) != null) {
+            sender.sendMessage(ChatColor.RED + "Template: " + templateName + " is loaded. Please unload it first");
+            return;
+        }
+        sender.sendMessage(ChatColor.GRAY + "Copying " + templateName + "...");
+        worldCloner.copy(templateDir, worldDir).whenComplete((bytes, t) -> {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (t != null) {
+                    CommandSenders.sendIfOnline(sender,
+                        ChatColor.RED + "Failed to copy " + templateName + "! Error: " + t.getMessage());
+                    return;
+                }
+                CommandSenders.sendIfOnline(sender,
+                    ChatColor.GRAY + String.format(Locale.ROOT, "Copied %.1f MB", bytes / 1024.0 / 1024.0));
+                // World type is kept in level.dat, but the dimension and the generator come from the creator
+                final WorldCreator creator = WorldCreator.name(worldName)
+                    .environment(environment != null ? environment : WorldLoader.detectEnvironment(worldDir));
+                if (generatorName != null) {
+                    creator.generator(generatorName);
+                }
+                enqueueCreation(sender, creator);
+            });
+        });
+    }
+
+    /**
+     * Resolves directory of specified world.
+     * Names that are absolute or contain {@code ..} could point outside of the world container, so they are rejected.
+     *
+     * @return directory of the world, or {@code null} if it isn't directly under the world container
+     */
+    private static Path resolveWorldDir(final String worldName) {
+        final Path worldContainer = Bukkit.getWorldContainer().toPath().toAbsolutePath().normalize();
+        final Path worldDir = worldContainer.resolve(worldName).normalize();
+        return worldContainer.equals(worldDir.getParent()) ? worldDir : null;
+    }
+
+    /**
+     * Creates or loads a world by specified creator and adds it to worlds.yml.
+     */
+    private void enqueueCreation(final CommandSender sender, final WorldCreator creator) {
+        final String worldName = creator.name();
+        creationQueue.enqueue(creator, sender).whenComplete((world, t) -> {
+            // The requester may have logged out while the world was queued
+            if (t != null) {
+                CommandSenders.sendIfOnline(sender,
+                    ChatColor.RED + "Failed to create " + worldName + "! Error: " + t.getMessage());
+                return;
+            }
+            config.getDefaultWorldConfig().apply(world);
+            worldConfigList.add(world, WorldConfig.fromDefault(config.getDefaultWorldConfig()));
+            saveWorldConfigList(sender, worldName);
+            CommandSenders.sendIfOnline(sender, ChatColor.GREEN + "Created " + worldName + "!");
+        });
+    }
+
+    @Executor(command = "world creation-queue", description = "Show worlds waiting to be created")
+    public void executeCreationQueue(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final List<String> entries = creationQueue.describe();
+        if (entries.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No worlds are queued");
+            return;
+        }
+        sender.sendMessage(ChatColor.BOLD + "Creation queue");
+        for (int i = 0; i < entries.size(); i++) {
+            sender.sendMessage("  " + (i + 1) + ". " + entries.get(i));
+        }
     }
 
     @Executor(command = "world tp <world:worlds>", description = "Teleport to world")
@@ -223,15 +448,50 @@ public final class WorldsCommands {
             data.getSender().sendMessage(ChatColor.RED + "Cannot perform this command from the console");
             return;
         }
-        final World world = Bukkit.getWorld(data.get("world"));
-        if (world == null) {
-            player.sendMessage(ChatColor.RED + "World: " + data.get("world") + " not found");
+        loadAndTeleport(player, data.get("world"));
+    }
+
+    /**
+     * Teleports the player to spawn of specified world.
+     * Managed worlds which are not loaded yet will be loaded before teleport.
+     */
+    private void loadAndTeleport(final Player player, final String worldName) {
+        final World world = Bukkit.getWorld(worldName);
+        if (world != null) {
+            teleportToSpawn(player, world);
+            return;
+        }
+        if (!worldConfigList.get(worldName).isPresent()) {
+            player.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
             return;
         }
+        player.sendMessage(ChatColor.GRAY + "Loading " + worldName + "...");
+        worldLoader.load(worldName).whenComplete((loaded, t) -> {
+            if (t != null) {
+                player.sendMessage(ChatColor.RED + "Failed to load " + worldName + ": " + t.getMessage());
+                return;
+            }
+            if (player.isOnline()) {
+                teleportToSpawn(player, loaded);
+            }
+        });
+    }
+
+    private void teleportToSpawn(final Player player, final World world) {
         final Location dest = worldConfigList.get(world)
-            .flatMap(worldConfig -> worldConfig.getSpawn())
+            .flatMap(WorldConfig::getSpawn)
             .map(coord -> coord.withWorld(world))
             .orElse(world.getSpawnLocation());
-        player.teleport(dest);
+        // Load chunks around the destination first, so the teleport doesn't load them synchronously
+        chunkPrefetcher.prefetch(dest).thenRun(() -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (Bukkit.getWorld(world.getUID()) == null) {
+                player.sendMessage(ChatColor.RED + "World: " + world.getName() + " was unloaded");
+                return;
+            }
+            player.teleport(dest);
+        });
     }
 }
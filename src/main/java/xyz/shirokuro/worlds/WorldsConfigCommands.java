@@ -24,10 +24,21 @@ import xyz.shirokuro.commandutility.CompletionData;
 public final class WorldsConfigCommands {
     private final WorldConfigList worldConfigList;
     private final Config config;
+    private final GameModeEnforcer gameModeEnforcer;
+    private final BatchApplier batchApplier;
+    private final LoadedWorldNames loadedWorldNames;
 
-    public WorldsConfigCommands(final Config config, final WorldConfigList worldConfigList) {
+    public WorldsConfigCommands(
+        final Config config,
+        final WorldConfigList worldConfigList,
+        final GameModeEnforcer gameModeEnforcer,
+        final BatchApplier batchApplier,
+        final LoadedWorldNames loadedWorldNames) {
         this.config = Objects.requireNonNull(config, "config");
         this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.gameModeEnforcer = Objects.requireNonNull(gameModeEnforcer, "gameModeEnforcer");
+        this.batchApplier = Objects.requireNonNull(batchApplier, "batchApplier");
+        this.loadedWorldNames = Objects.requireNonNull(loadedWorldNames, "loadedWorldNames");
     }
 
     @Executor(
@@ -75,8 +86,8 @@ public final class WorldsConfigCommands {
         sender.sendMessage("    - pitch: " + (spawn == null ? worldSpawn.getPitch() : spawn.getPitch()));
     }
 
-    private void saveWorldConfigList(final CommandSender sender) {
-        worldConfigList.save()
+    private void saveWorldConfigList(final CommandSender sender, final String worldName) {
+        worldConfigList.saveWorld(worldName)
             .exceptionally(t -> {
                 sender.sendMessage(ChatColor.RED + "Failed to save configuration! Error: " +
                         t.getMessage());
@@ -92,8 +103,7 @@ public final class WorldsConfigCommands {
     public void executeConfigSpawn(final ExecutionData data) {
         final CommandSender sender = data.getSender();
         final String worldName = data.get("world");
-        final WorldConfig worldConfig = worldConfigList.get(worldName).orElse(null);
-        if (worldConfig == null) {
+        if (!worldConfigList.get(worldName).isPresent()) {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
             return;
         }
@@ -103,8 +113,8 @@ public final class WorldsConfigCommands {
             final double z = Double.parseDouble(data.get("z"));
             final float yaw = Float.parseFloat(data.get("yaw"));
             final float pitch = Float.parseFloat(data.get("pitch"));
-            worldConfig.setSpawn(new Coord(x, y, z, yaw, pitch));
-            saveWorldConfigList(sender);
+            worldConfigList.update(worldName, c -> c.withSpawn(new Coord(x, y, z, yaw, pitch)));
+            saveWorldConfigList(sender, worldName);
             sender.sendMessage(ChatColor.GREEN + "Updated!");
         } catch (NumberFormatException e) {
             sender.sendMessage(ChatColor.RED + e.getMessage());
@@ -144,10 +154,7 @@ public final class WorldsConfigCommands {
                 ? Collections.singletonList(resultStr)
                 : Collections.emptyList();
         } else if (data.getName().equals("world")) {
-            return Bukkit.getWorlds().stream()
-                .map(World::getName)
-                .filter(w -> w.startsWith(data.getCurrentValue()))
-                .collect(Collectors.toList());
+            return loadedWorldNames.search(data.getCurrentValue());
         } else {
             return Collections.emptyList();
         }
@@ -160,11 +167,6 @@ public final class WorldsConfigCommands {
     public void executeConfigGameMode(final ExecutionData data) {
         final CommandSender sender = data.getSender();
         final String worldName = data.get("world");
-        final WorldConfig worldConfig = worldConfigList.get(worldName).orElse(null);
-        if (worldConfig == null) {
-            sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
-            return;
-        }
         final GameMode gameMode;
         try {
             gameMode = GameMode.valueOf(data.get("gamemode").toUpperCase(Locale.ENGLISH));
@@ -172,15 +174,24 @@ public final class WorldsConfigCommands {
             sender.sendMessage(ChatColor.RED + data.get("gamemode") + " is invalid game mode");
             return;
         }
-        worldConfig.setGameMode(gameMode);
-        saveWorldConfigList(sender);
+        if (!worldConfigList.update(worldName, c -> c.withGameMode(gameMode)).isPresent()) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
+            return;
+        }
+        saveWorldConfigList(sender, worldName);
         final World world = Bukkit.getWorld(worldName);
-        if (world != null) {
-            world.getPlayers().forEach(p -> {
-                worldConfig.updateGameModeIfNeeded(config, p);
-            });
+        if (world == null) {
+            sender.sendMessage(ChatColor.GREEN + "Updated!");
+            return;
         }
-        sender.sendMessage(ChatColor.GREEN + "Updated!");
+        // Players are updated across ticks; skip those who left the world in the meantime
+        batchApplier.submit(world.getPlayers(), p -> {
+            if (p.isOnline() && p.getWorld().equals(world)) {
+                gameModeEnforcer.enforce(p, gameMode);
+            }
+        }).thenAccept(count -> {
+            sender.sendMessage(ChatColor.GREEN + "Updated! (" + count + " players in the world)");
+        });
     }
 
     @Completer(command = "world config gamemode <world:managedworlds> <gamemode>")
@@ -208,7 +219,12 @@ public final class WorldsConfigCommands {
             sender.sendMessage(ChatColor.RED + gamerule + " is invalid gamerule!");
             return;
         }
-        world.setGameRuleValue(gamerule, data.get("value"));
+        final String value = data.get("value");
+        // Persisted for managed worlds, otherwise the default game rule would be applied again on load
+        if (worldConfigList.update(worldName, c -> c.withGameRule(gamerule, value)).isPresent()) {
+            saveWorldConfigList(sender, worldName);
+        }
+        WorldConfig.applyGameRule(world, gamerule, value);
         sender.sendMessage(ChatColor.GREEN + "Updated!");
     }
 
@@ -235,23 +251,84 @@ public final class WorldsConfigCommands {
     public void executeConfigKeepSpawnInMemory(final ExecutionData data) {
         final CommandSender sender = data.getSender();
         final String worldName = data.get("world");
-        final WorldConfig worldConfig = worldConfigList.get(worldName).orElse(null);
+        final boolean keepSpawnInMemory = Boolean.parseBoolean(data.get("value"));
+        final WorldConfig worldConfig = worldConfigList
+            .update(worldName, c -> c.withKeepSpawnInMemory(keepSpawnInMemory))
+            .orElse(null);
         if (worldConfig == null) {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
             return;
         }
-        worldConfig.setKeepSpawnInMemory(Boolean.parseBoolean(data.get("value")));
-        saveWorldConfigList(sender);
+        saveWorldConfigList(sender, worldName);
         final World world = Bukkit.getWorld(worldName);
         if (world != null) {
-            worldConfig.apply(world);
+            worldConfig.apply(world, config.getDefaultWorldConfig());
+        }
+        sender.sendMessage(ChatColor.GREEN + "Updated!");
+    }
+
+    @Executor(
+        command = "world config loadmode <world:managedworlds> <mode>",
+        description = "Set when to load specified world (eager|lazy)"
+    )
+    public void executeConfigLoadMode(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        final WorldConfig.LoadMode loadMode;
+        try {
+            loadMode = WorldConfig.LoadMode.valueOf(data.get("mode").toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatColor.RED + data.get("mode") + " is invalid load mode");
+            return;
+        }
+        if (!worldConfigList.update(worldName, c -> c.withLoadMode(loadMode)).isPresent()) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
+            return;
+        }
+        saveWorldConfigList(sender, worldName);
+        sender.sendMessage(ChatColor.GREEN + "Updated!");
+    }
+
+    @Completer(command = "world config loadmode <world:managedworlds> <mode>")
+    public List<String> completeConfigLoadMode(final CompletionData data) {
+        return Arrays.stream(WorldConfig.LoadMode.values())
+            .map(mode -> mode.name().toLowerCase(Locale.ENGLISH))
+            .filter(s -> s.startsWith(data.getCurrentValue()))
+            .collect(Collectors.toList());
+    }
+
+    @Executor(
+        command = "world config idleunloadafter <world:managedworlds> <seconds>",
+        description = "Set seconds to wait before unloading empty world (-1 to disable)"
+    )
+    public void executeConfigIdleUnloadAfter(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        final long seconds;
+        try {
+            seconds = Long.parseLong(data.get("seconds"));
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + e.getMessage());
+            return;
+        }
+        final WorldConfig worldConfig = worldConfigList
+            .update(worldName, c -> c.withIdleUnloadAfter(seconds < 0 ? -1 : seconds))
+            .orElse(null);
+        if (worldConfig == null) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
+            return;
+        }
+        saveWorldConfigList(sender, worldName);
+        if (seconds >= 0 && worldConfig.keepSpawnInMemory()) {
+            sender.sendMessage(ChatColor.GRAY + "Note: " + worldName + " keeps spawn in memory, " +
+                    "but it will be unloaded with its spawn chunks when it is idle.");
         }
         sender.sendMessage(ChatColor.GREEN + "Updated!");
     }
 
     @Executor(
         command = "world config time <world:worlds> <time>",
-        description = "Set time of specified world"
+        description = "Set time of specified world (-1 to clear the configured time)"
     )
     public void executeConfigTime(final ExecutionData data) {
         final CommandSender sender = data.getSender();
@@ -261,12 +338,20 @@ public final class WorldsConfigCommands {
             sender.sendMessage(ChatColor.RED + "World: " + worldName + " not found");
             return;
         }
+        final int time;
         try {
-            world.setTime(Integer.parseInt(data.get("time")));
+            time = Integer.parseInt(data.get("time"));
         } catch (NumberFormatException e) {
             sender.sendMessage(ChatColor.RED + e.getMessage());
             return;
         }
+        // Recorded for managed worlds, so a reload doesn't treat it as a change; -1 clears it
+        if (worldConfigList.update(worldName, c -> c.withTime(time < 0 ? -1 : time)).isPresent()) {
+            saveWorldConfigList(sender, worldName);
+        }
+        if (time >= 0) {
+            world.setTime(time);
+        }
         sender.sendMessage(ChatColor.GREEN + "Updated!");
     }
 }
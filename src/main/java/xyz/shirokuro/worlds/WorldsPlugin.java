@@ -3,40 +3,143 @@ package xyz.shirokuro.worlds;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import javax.management.JMException;
 import lombok.NonNull;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.World;
-import org.bukkit.WorldCreator;
-import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.plugin.Plugin;
 import xyz.shirokuro.commandutility.CommandGroup;
 import xyz.shirokuro.commandutility.CommandGroup;
 
-public final class WorldsPlugin implements Listener {
+public final class WorldsPlugin {
+
+    /**
+     * Saves requested within this period are written at once
+     */
+    private static final long SAVE_DELAY_MILLIS = 500;
+    private static final long COMPACTION_INTERVAL_TICKS = 20 * 60 * 5;
+    private static final long WATCH_DEBOUNCE_MILLIS = 1000;
+    private static final long TICKS_PER_SECOND = 20;
+    private static final long DISK_USAGE_INTERVAL_TICKS = 20 * 60 * 10;
 
     private static WorldsPlugin instance;
 
+    private final Metrics metrics = new Metrics();
+    private final FileWriteQueue writeQueue = new FileWriteQueue(SAVE_DELAY_MILLIS, metrics);
     private final WorldConfigList worldConfigList;
     private final Config config;
+    private final WorldLoader worldLoader;
+    private final WorldConfigTable worldConfigTable;
+    private final LoadedWorldNames loadedWorldNames = new LoadedWorldNames();
+    private final GameModeEnforcer gameModeEnforcer;
+    private final BatchApplier batchApplier;
+    private final WorldCreationQueue creationQueue;
+    private final ChunkPregenerator pregenerator;
+    private final ChunkPrefetcher chunkPrefetcher;
+    private final WorldCloner worldCloner;
+    private final WorldDirectoryScanner worldDirectoryScanner;
+    private final BackupStore backupStore;
+    private final WorldBackups worldBackups;
+    private final DiskUsageAccountant diskUsageAccountant;
+    private final ConfigReloader configReloader;
+    private DirectoryWatcher directoryWatcher;
+    private MetricsMBean metricsMBean;
 
     public WorldsPlugin(final Plugin plugin) throws PluginInitException {
         Logger.init(plugin.getLogger());
         plugin.saveDefaultConfig();
         final Path dataFolder = plugin.getDataFolder().toPath();
-        this.config = loadConfig(dataFolder);
-        this.worldConfigList = loadWorldConfigList(dataFolder);
-        Bukkit.getPluginManager().registerEvents(this, plugin);
+        // config.yml and worlds.yml are parsed concurrently, and world directories are checked off the main thread
+        final ExecutorService startupExecutor = createStartupExecutor();
+        try {
+            final CompletableFuture<Config> configFuture =
+                CompletableFuture.supplyAsync(() -> loadConfig(dataFolder), startupExecutor);
+            final CompletableFuture<WorldConfigList> worldConfigListFuture =
+                CompletableFuture.supplyAsync(() -> loadWorldConfigList(dataFolder), startupExecutor);
+            this.config = join(configFuture);
+            this.worldConfigList = join(worldConfigListFuture);
+        } catch (PluginInitException e) {
+            startupExecutor.shutdownNow();
+            throw e;
+        }
+        this.worldLoader = new WorldLoader(plugin, config, worldConfigList, metrics);
+        final List<String> eagerWorldNames = worldConfigList.getMap().entrySet().stream()
+            .filter(entry -> entry.getValue().getLoadMode() == WorldConfig.LoadMode.EAGER)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        final CompletableFuture<Void> prepared = worldLoader.prepare(eagerWorldNames, startupExecutor);
+        prepared.whenComplete((v, t) -> startupExecutor.shutdown());
+        this.worldConfigTable = new WorldConfigTable(worldConfigList);
+        worldConfigList.addListener(worldConfigTable::update);
+        // Directories of added or removed worlds must be checked again
+        worldConfigList.addListener(worldNames -> worldNames.forEach(worldLoader::invalidate));
+        worldConfigTable.refresh();
+        this.gameModeEnforcer = new GameModeEnforcer(config, worldConfigTable, metrics);
+        this.batchApplier = new BatchApplier(plugin, config);
+        this.creationQueue = new WorldCreationQueue(plugin, config);
+        this.chunkPrefetcher = new ChunkPrefetcher(plugin, config, metrics);
+        this.worldCloner = new WorldCloner(metrics);
+        this.worldDirectoryScanner = new WorldDirectoryScanner(Bukkit.getWorldContainer().toPath());
+        this.backupStore = new BackupStore(dataFolder.resolve("backups"), metrics);
+        this.worldBackups = new WorldBackups(plugin, config, worldConfigList, worldLoader, backupStore);
+        this.diskUsageAccountant = new DiskUsageAccountant(Bukkit.getWorldContainer().toPath(), metrics);
+        this.pregenerator = new ChunkPregenerator(
+            plugin, config, worldConfigList, dataFolder.resolve("pregen.yml"), writeQueue, metrics);
+        this.configReloader = new ConfigReloader(
+            plugin, config, worldConfigList, worldLoader, gameModeEnforcer, batchApplier, metrics);
+        Bukkit.getPluginManager().registerEvents(gameModeEnforcer, plugin);
+        Bukkit.getPluginManager().registerEvents(worldLoader, plugin);
+        Bukkit.getPluginManager().registerEvents(worldConfigTable, plugin);
+        Bukkit.getPluginManager().registerEvents(loadedWorldNames, plugin);
+        Bukkit.getPluginManager().registerEvents(creationQueue, plugin);
+        Bukkit.getPluginManager().registerEvents(worldDirectoryScanner, plugin);
+        Bukkit.getPluginManager().registerEvents(worldBackups, plugin);
+        Bukkit.getPluginManager().registerEvents(pregenerator, plugin);
+        worldDirectoryScanner.start(plugin);
+        loadedWorldNames.refresh();
+        final IdleWorldUnloader idleWorldUnloader =
+            new IdleWorldUnloader(plugin, worldConfigList, pregenerator, metrics);
+        Bukkit.getPluginManager().registerEvents(idleWorldUnloader, plugin);
+        idleWorldUnloader.start();
         registerCommands(plugin);
-        Logger.info("Loading worlds...");
-        loadWorlds();
-        Logger.info("Enabled!");
+        if (config.doWatchFiles()) {
+            watchFiles(dataFolder);
+        }
+        startMetrics(plugin, dataFolder);
+        pregenerator.resume();
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, worldConfigList::compact,
+                COMPACTION_INTERVAL_TICKS, COMPACTION_INTERVAL_TICKS);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                () -> diskUsageAccountant.refresh(worldConfigList.getMap().keySet()),
+                TICKS_PER_SECOND * 10, DISK_USAGE_INTERVAL_TICKS);
+        Logger.info("Checking world directories...");
+        prepared.whenComplete((v, t) -> {
+            if (t != null) {
+                // Unchecked worlds are checked again when they are loaded
+                Logger.warn("Failed to check world directories", t);
+            }
+            // The plugin may be disabled while directories are checked
+            if (!plugin.isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                Logger.info("Enabled! Loading worlds...");
+                worldLoader.enqueue(eagerWorldNames);
+            });
+        });
     }
 
     /**
@@ -56,44 +159,137 @@ public final class WorldsPlugin implements Listener {
         instance = new WorldsPlugin(plugin);
     }
 
-    private WorldConfigList loadWorldConfigList(final Path dataFolder) throws PluginInitException {
+    /**
+     * Writes pending changes to the disk.
+     * This method blocks until all writes are done.
+     */
+    public void shutdown() {
+        Logger.info("Saving pending changes...");
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+        if (metricsMBean != null) {
+            metricsMBean.unregister();
+        }
+        pregenerator.shutdown();
+        worldCloner.shutdown();
+        worldDirectoryScanner.close();
+        backupStore.shutdown();
+        diskUsageAccountant.shutdown();
+        worldConfigList.compact();
+        writeQueue.shutdown();
+    }
+
+    private void startMetrics(final Plugin plugin, final Path dataFolder) {
+        metrics.gauge("managed_worlds", () -> worldConfigList.getMap().size());
+        try {
+            this.metricsMBean = MetricsMBean.register(metrics);
+        } catch (JMException e) {
+            Logger.warn("Failed to register metrics MBean", e);
+        }
+        final long interval = config.getMetricsExportIntervalSeconds() * TICKS_PER_SECOND;
+        if (interval > 0) {
+            final PrometheusExporter exporter =
+                new PrometheusExporter(metrics, dataFolder.resolve("metrics.prom"), writeQueue);
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, exporter::export, interval, interval);
+        }
+    }
+
+    /**
+     * Reloads configuration when config.yml or worlds.yml is modified by others.
+     */
+    private void watchFiles(final Path dataFolder) throws PluginInitException {
+        final Set<Path> watchedFiles = new HashSet<>(Arrays.asList(
+            dataFolder.resolve("config.yml"),
+            dataFolder.resolve("worlds.yml")));
+        try {
+            // Other files such as metrics.prom are written periodically and must not delay reloads
+            final Predicate<Path> filter = name -> watchedFiles.contains(dataFolder.resolve(name));
+            this.directoryWatcher = DirectoryWatcher.start(dataFolder, WATCH_DEBOUNCE_MILLIS, filter, changed -> {
+                final boolean modifiedByOthers = changed.stream()
+                    .map(dataFolder::resolve)
+                    .anyMatch(path -> !isWrittenByThis(path));
+                if (!modifiedByOthers) {
+                    return;
+                }
+                configReloader.reload()
+                    .thenAccept(applied -> {
+                        if (applied) {
+                            Logger.info("Reloaded configuration because files were modified");
+                        }
+                    })
+                    .exceptionally(t -> {
+                        Logger.error("Failed to reload modified configuration", t);
+                        return null;
+                    });
+            });
+        } catch (IOException e) {
+            throw new PluginInitException("Failed to watch " + dataFolder, e);
+        }
+    }
+
+    private boolean isWrittenByThis(final Path path) {
+        try {
+            return Files.exists(path) && writeQueue.isWrittenByThis(path, Files.readAllBytes(path));
+        } catch (IOException e) {
+            Logger.warn("Failed to read " + path, e);
+            return true;
+        }
+    }
+
+    private WorldConfigList loadWorldConfigList(final Path dataFolder) {
         try {
-            return new WorldConfigList(dataFolder.resolve("worlds.yml"));
+            return new WorldConfigList(dataFolder.resolve("worlds.yml"), writeQueue, metrics);
         } catch (IOException | ConfigException e) {
-            throw new PluginInitException("Failed to load world list", e);
+            throw new CompletionException(new PluginInitException("Failed to load world list", e));
         }
     }
 
-    private Config loadConfig(final Path dataFolder) throws PluginInitException {
+    private Config loadConfig(final Path dataFolder) {
         try {
-            return new Config(dataFolder.resolve("config.yml"));
+            return new Config(dataFolder.resolve("config.yml"), writeQueue);
         } catch (IOException | ConfigException e) {
-            throw new PluginInitException("Failed to load configuration", e);
+            throw new CompletionException(new PluginInitException("Failed to load configuration", e));
+        }
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) throws PluginInitException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PluginInitException) {
+                throw (PluginInitException) e.getCause();
+            }
+            throw new PluginInitException("Failed to initialize", e.getCause());
         }
     }
 
+    private static ExecutorService createStartupExecutor() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            r -> {
+                final Thread thread = new Thread(r, "Worlds-Startup-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
     private void registerCommands(final Plugin plugin) {
         new CommandGroup(ChatColor.RED.toString())
             .addCompleter("managedworlds", data -> {
-                return worldConfigList.getMap().keySet().stream()
-                    .filter(s -> s.startsWith(data.getCurrentValue()))
-                    .collect(Collectors.toList());
+                return worldConfigList.getWorldNamesStartingWith(data.getCurrentValue());
             })
             .generateHelp(ChatColor.BOLD + "Worlds: Help")
-            .addAll(new WorldsCommands(plugin, config, worldConfigList))
-            .addAll(new WorldsConfigCommands(config, worldConfigList));
-    }
-
-    private void loadWorlds() {
-        final Path worldContainer = Bukkit.getWorldContainer().toPath();
-        worldConfigList.getMap().forEach((worldName, worldConfig) -> {
-            if (Files.notExists(worldContainer.resolve(worldName))) {
-                Logger.warn("World: " + worldName + " is registered in worlds.yml but not exist!");
-                return;
-            }
-            final World world = WorldCreator.name(worldName).createWorld();
-            worldConfig.apply(world);
-        });
+            .addAll(new WorldsCommands(
+                plugin, config, worldConfigList, worldLoader, configReloader, gameModeEnforcer, batchApplier,
+                loadedWorldNames, metrics, creationQueue, chunkPrefetcher, worldCloner, worldDirectoryScanner,
+                diskUsageAccountant))
+            .addAll(new WorldsConfigCommands(
+                config, worldConfigList, gameModeEnforcer, batchApplier, loadedWorldNames))
+            .addAll(new WorldsBulkConfigCommands(config, worldConfigList, gameModeEnforcer, batchApplier))
+            .addAll(new WorldsPregenCommands(worldConfigList, pregenerator))
+            .addAll(new WorldsBackupCommands(worldBackups));
     }
 
     /**
@@ -106,28 +302,19 @@ public final class WorldsPlugin implements Listener {
         return worldConfigList;
     }
 
+    public WorldLoader getWorldLoader() {
+        return worldLoader;
+    }
+
     public Config getWrappedConfig() {
         return config;
     }
 
-    @EventHandler
-    public void onWorldChange(final PlayerTeleportEvent event) {
-        final World from = event.getFrom().getWorld();
-        final World to = event.getTo().getWorld();
-        if (from.equals(to)) {
-            return;
-        }
-        worldConfigList.get(to).ifPresent(worldConfig -> {
-            final Player player = event.getPlayer();
-            worldConfig.updateGameModeIfNeeded(config, player);
-        });
+    public Metrics getMetrics() {
+        return metrics;
     }
 
-    @EventHandler
-    public void onJoin(final PlayerJoinEvent event) {
-        final Player player = event.getPlayer();
-        worldConfigList.get(player.getWorld()).ifPresent(worldConfig -> {
-            worldConfig.updateGameModeIfNeeded(config, player);
-        });
+    public GameModeEnforcer getGameModeEnforcer() {
+        return gameModeEnforcer;
     }
 }
@@ -0,0 +1,93 @@
+package xyz.shirokuro.worlds;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import xyz.shirokuro.commandutility.ExecutionData;
+import xyz.shirokuro.commandutility.annotation.Executor;
+
+public final class WorldsPregenCommands {
+
+    /**
+     * Larger radiuses take days to generate and are likely typos
+     */
+    private static final int MAX_RADIUS_BLOCKS = 100_000;
+
+    private final WorldConfigList worldConfigList;
+    private final ChunkPregenerator pregenerator;
+
+    public WorldsPregenCommands(final WorldConfigList worldConfigList, final ChunkPregenerator pregenerator) {
+        this.worldConfigList = Objects.requireNonNull(worldConfigList, "worldConfigList");
+        this.pregenerator = Objects.requireNonNull(pregenerator, "pregenerator");
+    }
+
+    @Executor(
+        command = "world pregen <world:worlds> <radius>",
+        description = "Generate chunks within specified radius in blocks around spawn"
+    )
+    public void executePregen(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        final int radius;
+        try {
+            radius = Integer.parseInt(data.get("radius"));
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + e.getMessage());
+            return;
+        }
+        if (radius < 0 || radius > MAX_RADIUS_BLOCKS) {
+            sender.sendMessage(ChatColor.RED + "Radius must be between 0 and " + MAX_RADIUS_BLOCKS);
+            return;
+        }
+        final World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " is not loaded");
+            return;
+        }
+        final Coord spawn = worldConfigList.get(world)
+            .flatMap(WorldConfig::getSpawn)
+            .orElseGet(() -> Coord.fromLocation(world.getSpawnLocation()));
+        final int radiusChunks = (radius + 15) / 16;
+        try {
+            pregenerator.start(world, spawn, radiusChunks, sender);
+        } catch (IllegalStateException e) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " is already being pre-generated");
+            return;
+        }
+        final long diameter = radiusChunks * 2L + 1;
+        sender.sendMessage(ChatColor.GREEN + "Started pre-generation of " + diameter * diameter + " chunks");
+    }
+
+    @Executor(
+        command = "world pregenstop <world:worlds>",
+        description = "Stop pre-generation of specified world"
+    )
+    public void executePregenStop(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final String worldName = data.get("world");
+        if (!pregenerator.stop(worldName)) {
+            sender.sendMessage(ChatColor.RED + "World: " + worldName + " is not being pre-generated");
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "Stopped!");
+    }
+
+    @Executor(command = "world pregenstatus", description = "Show progress of pre-generation")
+    public void executePregenStatus(final ExecutionData data) {
+        final CommandSender sender = data.getSender();
+        final List<String> entries = pregenerator.describe();
+        if (entries.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No worlds are being pre-generated");
+            return;
+        }
+        sender.sendMessage(ChatColor.BOLD
+            + String.format(Locale.ROOT, "Pre-generation (TPS: %.1f)", pregenerator.getTps()));
+        for (final String entry : entries) {
+            sender.sendMessage("  " + entry);
+        }
+    }
+}